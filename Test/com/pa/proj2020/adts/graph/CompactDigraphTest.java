@@ -0,0 +1,127 @@
+package com.pa.proj2020.adts.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactDigraphTest {
+
+    private final CompactDigraph<String, Integer> graph;
+    private final Vertex<String> v1;
+    private final Vertex<String> v2;
+    private final Vertex<String> v3;
+    private final Edge<Integer, String> e1;
+    private final Edge<Integer, String> e2;
+    private final Edge<Integer, String> e3;
+
+    public CompactDigraphTest() {
+        graph = new CompactDigraph<>(element -> Integer.parseInt(element.substring(7)));
+
+        v1 = graph.insertVertex("Vertice1");
+        v2 = graph.insertVertex("Vertice2");
+        v3 = graph.insertVertex("Vertice3");
+
+        e1 = graph.insertEdge("Vertice1", "Vertice2", 1);
+        e2 = graph.insertEdge("Vertice2", "Vertice1", 2);
+        e3 = graph.insertEdge("Vertice1", "Vertice3", 3);
+    }
+
+    /**
+     * Test of incidentEdges and outboundEdges methods, of class CompactDigraph.
+     */
+    @Test
+    public void testIncidentAndOutboundEdges() {
+        Collection<Edge<Integer, String>> incident = graph.incidentEdges(v1);
+        Collection<Edge<Integer, String>> outbound = graph.outboundEdges(v1);
+
+        assertEquals(1, incident.size());
+        assertTrue(incident.contains(e2));
+        assertEquals(2, outbound.size());
+        assertTrue(outbound.contains(e1) && outbound.contains(e3));
+    }
+
+    /**
+     * Test of vertexOf method, of class CompactDigraph.
+     */
+    @Test
+    public void testVertexOf() {
+        assertSame(v2, graph.vertexOf(2));
+        assertNull(graph.vertexOf(7));
+    }
+
+    /**
+     * Test of areAdjacent method, of class CompactDigraph.
+     */
+    @Test
+    public void testAreAdjacent() {
+        assertTrue(graph.areAdjacent(v3, v1));
+        assertFalse(graph.areAdjacent(v2, v3));
+    }
+
+    /**
+     * Test of removeVertex method, of class CompactDigraph.
+     */
+    @Test
+    public void testRemoveVertex() {
+        assertEquals("Vertice1", graph.removeVertex(v1));
+        assertEquals(2, graph.numVertices());
+        assertEquals(0, graph.numEdges());
+        assertEquals(0, graph.incidentEdges(v2).size());
+        assertThrows(InvalidEdgeException.class, () -> graph.removeEdge(e1));
+    }
+
+    /**
+     * Test of insertEdge method, of class CompactDigraph, after the index is built.
+     */
+    @Test
+    public void testInsertEdge_afterIndex() {
+        assertEquals(0, graph.outDegree(v3));
+
+        Edge<Integer, String> edge = graph.insertEdge(v3, v2, 4);
+
+        assertEquals(1, graph.outDegree(v3));
+        assertEquals(2, graph.inDegree(v2));
+        assertEquals(v3, graph.opposite(v2, edge));
+        assertEquals(4, graph.edges().size());
+    }
+
+    /**
+     * Test of replace method, of class CompactDigraph.
+     */
+    @Test
+    public void testReplace_Vertex_GenericType() {
+        assertEquals("Vertice1", graph.replace(v1, "Vertice9"));
+        assertSame(v1, graph.vertexOf(9));
+        assertNull(graph.vertexOf(1));
+    }
+
+    /**
+     * Test of vertexOf method, of class CompactDigraph, with sparse keys: a
+     * key near Integer.MAX_VALUE must not allocate an array of that size.
+     */
+    @Test
+    public void testVertexOf_sparseKeys() {
+        Vertex<String> big = graph.insertVertex("Vertice2000000000");
+        Vertex<String> max = graph.insertVertex("Vertice" + Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            graph.insertVertex("Vertice" + (i * 1_000_003 + 10));
+        }
+
+        assertSame(big, graph.vertexOf(2_000_000_000));
+        assertSame(max, graph.vertexOf(Integer.MAX_VALUE));
+        assertSame(v1, graph.vertexOf(1));
+        assertSame(v3, graph.vertexOf(3));
+        assertNull(graph.vertexOf(7));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Vertice" + (i * 1_000_003 + 10), graph.vertexOf(i * 1_000_003 + 10).element());
+        }
+
+        graph.removeVertex(big);
+        assertNull(graph.vertexOf(2_000_000_000));
+        assertEquals("Vertice2", graph.replace(v2, "Vertice2000000000"));
+        assertSame(v2, graph.vertexOf(2_000_000_000));
+        assertNull(graph.vertexOf(2));
+    }
+}
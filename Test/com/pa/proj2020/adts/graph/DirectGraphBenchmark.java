@@ -0,0 +1,48 @@
+package com.pa.proj2020.adts.graph;
+
+import java.util.ArrayList;
+
+/**
+ * Benchmark of insertEdge method, of class DirectGraph: times the insertion of
+ * 250k and 1M edges, whose ratio should be about 4 for a linear insertion (16
+ * for a quadratic one). It is not a unit test; run its main method, preferably
+ * with a large initial heap (e.g., -Xms2g) so the garbage collector doesn't
+ * dominate the measure.
+ */
+public class DirectGraphBenchmark {
+
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        insertionTime(250_000);
+        long small = insertionTime(250_000);
+        long large = insertionTime(1_000_000);
+        System.out.printf("250k edges: %d ms%n", small / 1_000_000);
+        System.out.printf("1M edges: %d ms%n", large / 1_000_000);
+        System.out.printf("ratio: %.1f (linear: 4, quadratic: 16)%n", (double) large / small);
+    }
+
+    /**
+     * Inserts edges in new graphs, with a tenth as many vertices.
+     *
+     * @param numEdges number of edges to insert
+     * @return the shortest insertion time, in nanoseconds
+     */
+    private static long insertionTime(int numEdges) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            int numVertices = numEdges / 10;
+            DirectGraph<Integer, Integer> graph = new DirectGraph<>();
+            ArrayList<Vertex<Integer>> vertices = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < numVertices; i++) {
+                vertices.add(graph.insertVertex(i));
+            }
+            for (int i = 0; i < numEdges; i++) {
+                graph.insertEdge(vertices.get(i % numVertices), vertices.get((i * 31 + 7) % numVertices), i);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -7,6 +7,8 @@ import java.util.Collection;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class DirectGraphTest {
 
@@ -133,6 +135,20 @@ class DirectGraphTest {
 
     }
 
+    /**
+     * Test of areAdjacent method, of class DirectGraph, after removing the edges.
+     */
+    @Test
+    public void testAreAdjacent_afterRemoveEdge() {
+        graph.removeEdge(e4);
+        assertEquals(true, graph.areAdjacent(v4, v3));
+
+        graph.removeEdge(e6);
+        assertEquals(false, graph.areAdjacent(v4, v3));
+        assertEquals(0, graph.outboundEdges(v3).size());
+        assertEquals(1, graph.incidentEdges(v4).size());
+    }
+
     /**
      * Test of insertEdge method, of class DirectGraph.
      */
@@ -178,6 +194,71 @@ class DirectGraphTest {
 
     }
 
+    /**
+     * Test of insertEdge method, of class DirectGraph, with a vertex of another graph.
+     */
+    @Test
+    public void testInsertEdge_vertexOfAnotherGraph() {
+        DirectGraph<String, Integer> other = new DirectGraph<>();
+        Vertex<String> foreign = other.insertVertex("Vertice1");
+
+        assertThrows(InvalidVertexException.class, () -> graph.insertEdge(foreign, v2, 30));
+        assertThrows(InvalidVertexException.class, () -> other.removeEdge(e1));
+    }
+
+    /**
+     * Test of insertEdge method, of class DirectGraph, with many edges. The
+     * insertion time is measured by {@link DirectGraphBenchmark}.
+     */
+    @Test
+    public void testInsertEdge_bulkInsertion() {
+        int numVertices = 1_000;
+        int numEdges = 10_000;
+        DirectGraph<Integer, Integer> bigGraph = new DirectGraph<>();
+        ArrayList<Vertex<Integer>> bigVertices = new ArrayList<>();
+        for (int i = 0; i < numVertices; i++) {
+            bigVertices.add(bigGraph.insertVertex(i));
+        }
+        for (int i = 0; i < numEdges; i++) {
+            bigGraph.insertEdge(bigVertices.get(i % numVertices),
+                    bigVertices.get((i * 31 + 7) % numVertices), i);
+        }
+
+        assertEquals(numEdges, bigGraph.numEdges());
+        int i = 0;
+        for (Edge<Integer, Integer> edge : bigGraph.edges()) {
+            assertEquals(Integer.valueOf(i), edge.element());
+            assertEquals(bigVertices.get(i % numVertices), edge.vertices()[0]);
+            assertEquals(bigVertices.get((i * 31 + 7) % numVertices), edge.vertices()[1]);
+            i++;
+        }
+        assertEquals(numEdges / numVertices, bigGraph.outboundEdges(bigVertices.get(0)).size());
+    }
+
+    /**
+     * Test of insertEdges method, of class DirectGraph, with an invalid edge
+     * after valid ones: the graph is not changed and no event is sent.
+     */
+    @Test
+    public void testInsertEdges_invalidEdgeLeavesGraphUnchanged() {
+        ArrayList<Object> events = new ArrayList<>();
+        graph.addObservers(events::add);
+        String[] sources = {"Vertice1", "Vertice3", "Vertice4"};
+
+        assertThrows(InvalidVertexException.class, () -> graph.insertEdges(sources,
+                new String[]{"Vertice3", "Vertice5", "Vertice6"}, new Integer[]{10, 11, 12}));
+        assertThrows(InvalidEdgeException.class, () -> graph.insertEdges(sources,
+                new String[]{"Vertice3", "Vertice5", "Vertice1"}, new Integer[]{10, 11, 7}));
+        assertThrows(InvalidEdgeException.class, () -> graph.insertEdges(sources,
+                new String[]{"Vertice3", "Vertice5", "Vertice1"}, new Integer[]{10, 11, 10}));
+        assertEquals(7, graph.numEdges());
+        assertEquals(0, events.size());
+
+        graph.insertEdges(sources, new String[]{"Vertice3", "Vertice5", "Vertice1"}, new Integer[]{10, null, 12});
+        assertEquals(9, graph.numEdges());
+        assertEquals(2, events.size());
+    }
+
     /**
      * Test of numVertices method, of class DirectGraph.
      */
@@ -199,6 +280,22 @@ class DirectGraphTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of numEdges and edges methods, of class DirectGraph, after removing
+     * edges and vertices.
+     */
+    @Test
+    public void testNumEdges_afterRemove() {
+        Collection<Edge<Integer, String>> edges = graph.edges();
+
+        graph.removeEdge(e1);
+        assertEquals(6, graph.numEdges());
+        graph.removeVertex(v5);
+        assertEquals(3, graph.numEdges());
+        assertEquals(3, edges.size());
+        assertThrows(UnsupportedOperationException.class, () -> edges.remove(e2));
+    }
+
     /**
      * Test of opposite method, of class DirectGraph.
      */
@@ -238,6 +335,28 @@ class DirectGraphTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of insertVertex and replace methods, of class DirectGraph, with
+     * elements that are not equal but have the same key.
+     */
+    @Test
+    public void testInsertVertex_existingKey() {
+        DirectGraph<User, Integer> keyedGraph = new DirectGraph<>(User::getID);
+        Vertex<User> first = keyedGraph.insertVertex(new User("Ana", 7, Type.ADICIONADO));
+        Vertex<User> second = keyedGraph.insertVertex(new User("Rui", 8, Type.ADICIONADO));
+
+        assertThrows(InvalidVertexException.class,
+                () -> keyedGraph.insertVertex(new User("Ana", 7, Type.ADICIONADO)));
+        assertThrows(InvalidVertexException.class,
+                () -> keyedGraph.replace(second, new User("Ana", 7, Type.INCLUIDO)));
+        assertEquals(2, keyedGraph.numVertices());
+        assertSame(first, keyedGraph.findVertex(new User("Ana", 7, Type.INCLUIDO)));
+        assertSame(second, keyedGraph.findVertex(new User("Rui", 8, Type.INCLUIDO)));
+
+        keyedGraph.replace(first, new User("Ana Maria", 7, Type.ADICIONADO));
+        assertSame(first, keyedGraph.findVertex(new User("Ana", 7, Type.INCLUIDO)));
+    }
+
     /**
      * Test of replace method, of class DirectGraph.
      */
@@ -248,6 +367,60 @@ class DirectGraphTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * Test of minCostPath method, of class DirectGraph.
+     */
+    @Test
+    public void testMinCostPath() {
+        ArrayList<String> path = new ArrayList<>();
+
+        assertEquals(2, graph.minCostPath(v1, v4, path));
+        assertEquals(2, path.size());
+        assertEquals("Vertice5", path.get(0));
+        assertEquals("Vertice4", path.get(1));
+
+        assertEquals(-1, graph.minCostPath(v3, v1, path));
+        assertEquals(0, path.size());
+    }
+
+    /**
+     * Test of minCostPath method, of class DirectGraph, with the bidirectional search.
+     */
+    @Test
+    public void testMinCostPath_bidirectional() {
+        ArrayList<String> path = new ArrayList<>();
+
+        assertEquals(2, graph.minCostPath(v1, v4, path, true));
+        assertEquals("Vertice5", path.get(0));
+        assertEquals("Vertice4", path.get(1));
+
+        assertEquals(3, graph.minCostPath(v2, v3, path, true));
+        assertEquals("Vertice5", path.get(0));
+        assertEquals("Vertice4", path.get(1));
+        assertEquals("Vertice3", path.get(2));
+
+        assertEquals(0, graph.minCostPath(v2, v2, path, true));
+        assertEquals(0, path.size());
+        assertEquals(-1, graph.minCostPath(v4, v2, path, true));
+    }
+
+    /**
+     * Test of hopDistanceMatrix method, of class DirectGraph.
+     */
+    @Test
+    public void testHopDistanceMatrix() {
+        HopDistances<String> distances = graph.hopDistanceMatrix();
+        int i1 = distances.getVertices().indexOf(v1);
+        int i3 = distances.getVertices().indexOf(v3);
+        int i4 = distances.getVertices().indexOf(v4);
+
+        assertEquals(3, distances.distance(i1, i3));
+        assertEquals(HopDistances.UNREACHABLE, distances.distance(i4, i1));
+        assertEquals(3, distances.getDiameter());
+        assertEquals(12, distances.getReachablePairs());
+        assertEquals(distances.getReachablePairs(), graph.hopDistanceHistogram().getReachablePairs());
+    }
+
     /**
      * Test of containVertice method, of class DirectGraph.
      */
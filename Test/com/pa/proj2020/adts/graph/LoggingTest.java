@@ -0,0 +1,43 @@
+package com.pa.proj2020.adts.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoggingTest {
+    private final Logging logging = Logging.getInstance();
+
+    /**
+     * Test of addRelationshipDirect method, of class Logging, called from
+     * several threads, with more records than the capacity.
+     */
+    @Test
+    void addRelationshipDirect_parallel() {
+        long count = logging.getCount();
+        int total = Logging.CAPACITY + 1000;
+
+        IntStream.range(0, total).parallel().forEach(i -> logging.addRelationshipDirect(i, i + 1, 2));
+
+        List<Logging.Record> records = logging.getRecords();
+        assertEquals(count + total, logging.getCount());
+        assertEquals(Logging.CAPACITY, records.size());
+        assertTrue(records.stream().allMatch(record -> record.getType() == Logging.EventType.RELATIONSHIP_DIRECT
+                && record.getId() == record.getIdUser() + 1));
+    }
+
+    /**
+     * Test of toString method, of class Record.
+     */
+    @Test
+    void recordToString() {
+        logging.addInterest(3, 7);
+        List<Logging.Record> records = logging.getRecords();
+        Logging.Record record = records.get(records.size() - 1);
+
+        assertEquals(Logging.EventType.INTEREST, record.getType());
+        assertTrue(record.toString().matches("<\\d{2}/\\d{2}/\\d{4} \\d{2}:\\d{2}:\\d{2}> \\| <3> \\| <7>"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.pa.proj2020.adts.graph;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingLogWriterTest {
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("logs");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private List<Path> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private List<String> records(List<Path> files) throws IOException {
+        List<String> records = new ArrayList<>();
+        for (Path file : files) {
+            Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.startsWith("****")).forEach(records::add);
+        }
+        return records;
+    }
+
+    /**
+     * Test of flush method, of class RollingLogWriter.
+     */
+    @Test
+    void flush() throws IOException {
+        RollingLogWriter writer = new RollingLogWriter(directory, "LogFile ", 16, 1 << 20, 60000, 1000);
+        List<String> expResult = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expResult.add("<" + i + "> | <" + (i * 2) + ">");
+            writer.append(expResult.get(i));
+        }
+        writer.flush();
+
+        assertEquals(1, logFiles().size());
+        assertEquals(expResult, records(logFiles()));
+        writer.close();
+    }
+
+    /**
+     * Test of append method, of class RollingLogWriter, rolling the file when it
+     * reaches the maximum size.
+     */
+    @Test
+    void append_rollsBySize() throws IOException {
+        RollingLogWriter writer = new RollingLogWriter(directory, "LogFile ", 16, 200, 60000, 1000);
+        List<String> expResult = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expResult.add("<" + i + "> | <" + (i * 2) + ">");
+            writer.append(expResult.get(i));
+        }
+        writer.close();
+
+        List<Path> files = logFiles();
+        assertTrue(files.size() > 1);
+        List<String> result = records(files);
+        result.sort(null);
+        expResult.sort(null);
+        assertEquals(expResult, result);
+        for (Path file : files) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertTrue(lines.get(lines.size() - 1).startsWith("****"));
+        }
+    }
+}
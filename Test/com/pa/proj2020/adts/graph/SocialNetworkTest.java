@@ -3,7 +3,12 @@ package com.pa.proj2020.adts.graph;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -65,4 +70,470 @@ class SocialNetworkTest {
         int result = graph.numVertices();
         assertEquals(expResult, result);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of constructModel method, of class SocialNetwork, against the
+     * graph built one edge at a time.
+     */
+    @Test
+    void constructModelTotal_sameAsSequential() {
+        DirectGraph<User, Relationship> graph = socialNetwork.constructModelTotal();
+
+        SocialNetwork sequential = new SocialNetwork();
+        sequential.initializeData();
+        sequential.getUsers().values().forEach(user -> sequential.getGraph().insertVertex(user));
+        CsvTable relationships = sequential.getRelationships();
+        for (int row = 0; row < relationships.size(); row++) {
+            User user = sequential.getUsers().get(relationships.getKey(row));
+            for (int i = 0; i < relationships.rowLength(row); i++) {
+                sequential.insertEdge(user, sequential.getUsers().get(relationships.getValue(row, i)));
+            }
+        }
+
+        assertEquals(summary(sequential.getGraph()), summary(graph));
+        assertEquals(edgeOrder(sequential.getGraph()), edgeOrder(graph));
+        assertEquals(sequential.topFiveUsersWithMostRelationshipsStats().toString(),
+                socialNetwork.topFiveUsersWithMostRelationshipsStats().toString());
+    }
+
+    private static List<String> edgeOrder(DirectGraph<User, Relationship> graph) {
+        return graph.edges().stream().map(edge -> edge.vertices()[0].element().getID() + ">"
+                + edge.vertices()[1].element().getID()).collect(Collectors.toList());
+    }
+
+    /**
+     * Test of constructModelIterative method, of class SocialNetwork: the
+     * edges of an added user go to its friends and are not repeated when the
+     * user is added again.
+     */
+    @Test
+    void constructModelIterative_edgesToFriends() {
+        DirectGraph<User, Relationship> graph = socialNetwork.getGraph();
+        socialNetwork.constructModelIterative(1);
+        socialNetwork.constructModelIterative(2);
+        int numEdges = graph.numEdges();
+        socialNetwork.constructModelIterative(2);
+        assertEquals(numEdges, graph.numEdges());
+
+        for (int id : new int[]{1, 2}) {
+            Vertex<User> userVertex = graph.findVertex(socialNetwork.getUsers().get(id));
+            Set<Integer> friends = new TreeSet<>();
+            for (int friend : socialNetwork.getRelationships().valuesOf(id)) {
+                if (friend != id && socialNetwork.getUsers().containsKey(friend)) {
+                    friends.add(friend);
+                }
+            }
+            Set<Integer> targets = graph.outboundEdges(userVertex).stream()
+                    .map(edge -> edge.vertices()[1].element().getID())
+                    .collect(Collectors.toCollection(TreeSet::new));
+            assertEquals(friends, targets);
+            assertEquals(friends.size(), graph.outboundEdges(userVertex).size());
+            assertEquals(Type.ADICIONADO, userVertex.element().getType());
+        }
+    }
+
+    /**
+     * Test of constructModelIterativeNeighborhood method, of class
+     * SocialNetwork, against adding the same users one at a time.
+     */
+    @Test
+    void constructModelIterativeNeighborhood_sameAsOneAtATime() {
+        List<Object> notifications = new ArrayList<>();
+        socialNetwork.addObservers(notifications::add);
+        List<Integer> added = socialNetwork.constructModelIterativeNeighborhood(1, 2);
+
+        assertEquals(1, notifications.size());
+        assertSame(socialNetwork.getGraph(), notifications.get(0));
+        assertEquals(1, added.get(0));
+        for (int friend : socialNetwork.getRelationships().valuesOf(1)) {
+            assertTrue(added.contains(friend));
+        }
+
+        SocialNetwork oneAtATime = new SocialNetwork();
+        oneAtATime.initializeData();
+        added.forEach(oneAtATime::constructModelIterative);
+        assertEquals(graphState(oneAtATime.getGraph()), graphState(socialNetwork.getGraph()));
+        assertEquals(added.subList(0, 5), socialNetwork.constructModelIterative(added.subList(0, 5)));
+        assertEquals(graphState(oneAtATime.getGraph()), graphState(socialNetwork.getGraph()));
+    }
+
+    /**
+     * Test of constructModelIterativeRanges method, of class SocialNetwork,
+     * with ranges and single ids: the users are added in the order of the
+     * ranges with a single notification.
+     */
+    @Test
+    void constructModelIterativeRanges_singleNotification() {
+        List<Object> notifications = new ArrayList<>();
+        socialNetwork.addObservers(notifications::add);
+        List<Integer> added = socialNetwork.constructModelIterativeRanges(Arrays.asList(
+                new int[]{40, 45}, new int[]{3, 3}, new int[]{44, Integer.MAX_VALUE}, new int[]{9999, 9999}));
+
+        assertEquals(1, notifications.size());
+        assertEquals(Arrays.asList(40, 41, 42, 43, 44, 45, 3, 46, 47, 48, 49, 50), added);
+
+        SocialNetwork oneAtATime = new SocialNetwork();
+        oneAtATime.initializeData();
+        added.forEach(oneAtATime::constructModelIterative);
+        assertEquals(graphState(oneAtATime.getGraph()), graphState(socialNetwork.getGraph()));
+    }
+
+    /**
+     * Test of addIndirectRelationships methods, of class SocialNetwork: the
+     * indirect edges go to users sharing interests and the all users mode
+     * creates the same edges as adding them one user at a time.
+     */
+    @Test
+    void addIndirectRelationships_allUsers() {
+        socialNetwork.constructModelIterative(1, 10);
+        SocialNetwork oneAtATime = new SocialNetwork();
+        oneAtATime.initializeData();
+        oneAtATime.constructModelIterative(1, 10);
+
+        int added = 0;
+        for (Vertex<User> userVertex : new ArrayList<>(oneAtATime.getGraph().vertices())) {
+            added += oneAtATime.addIndirectRelationships(userVertex.element().getID());
+        }
+        assertTrue(added > 0);
+        assertEquals(0, oneAtATime.addIndirectRelationships(1));
+        oneAtATime.getGraph().edges().stream().filter(edge -> edge.element() instanceof RelationshipIndirect)
+                .forEach(edge -> assertTrue(oneAtATime.getInterestIndex().shareInterests(
+                        edge.vertices()[0].element().getID(), edge.vertices()[1].element().getID())));
+
+        assertEquals(added, socialNetwork.addIndirectRelationships());
+        assertEquals(summary(oneAtATime.getGraph()), summary(socialNetwork.getGraph()));
+    }
+
+    /**
+     * Test of constructModelCompact method, of class SocialNetwork.
+     */
+    @Test
+    void constructModelCompact_numEdges() {
+        CompactDigraph<User, Relationship> graph = socialNetwork.constructModelCompact();
+        assertEquals(365, graph.numEdges());
+        assertEquals(50, graph.numVertices());
+    }
+
+    /**
+     * Test of topFiveUsersWithMostRelationshipsStats method, of class SocialNetwork,
+     * after removing the user with most relationships.
+     */
+    @Test
+    void topFiveUsersWithMostRelationshipsStats_afterRemoveVertex() {
+        DirectGraph<User, Relationship> graph = socialNetwork.constructModelTotal();
+        Map<User, Integer> top = socialNetwork.topFiveUsersWithMostRelationshipsStats();
+        User first = top.keySet().iterator().next();
+        int expResult = graph.vertices().stream().mapToInt(userVertex -> (int) graph.incidentEdges(userVertex)
+                .stream().filter(edge -> !(edge.element() instanceof RelationshipIndirect)).count()).max().orElse(0);
+
+        assertEquals(5, top.size());
+        assertEquals(expResult, top.get(first));
+
+        graph.removeVertex(graph.getVertices().get(first));
+        assertFalse(socialNetwork.topFiveUsersWithMostRelationshipsStats().containsKey(first));
+    }
+
+    /**
+     * Test of topUsersWithMostRelationshipsStats and topInterestsStats methods,
+     * of class SocialNetwork, with more positions than candidates.
+     */
+    @Test
+    void topStats_largerThanCandidates() {
+        socialNetwork.constructModelTotal();
+        Map<User, Integer> users = socialNetwork.topUsersWithMostRelationshipsStats(1000);
+        Map<Interest, Integer> interests = socialNetwork.topInterestsStats(1000);
+
+        assertTrue(users.size() < 1000);
+        assertTrue(interests.size() < 1000);
+        assertEquals(socialNetwork.topFiveUsersWithMostRelationshipsStats().keySet(),
+                users.keySet().stream().limit(5).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Test of topInterestsStats method, of class Statistics, with different
+     * objects of the same interest, e.g. from an imported snapshot and from the
+     * interest index: they must be counted as one interest.
+     */
+    @Test
+    void topInterestsStats_sameInterestInDifferentObjects() {
+        DirectGraph<User, Relationship> graph = new DirectGraph<>(User::getID);
+        User user1 = new User("User1", 1, Type.ADICIONADO);
+        User user2 = new User("User2", 2, Type.ADICIONADO);
+        User user3 = new User("User3", 3, Type.ADICIONADO);
+        graph.insertVertex(user1);
+        graph.insertVertex(user2);
+        graph.insertVertex(user3);
+        Statistics statistics = new Statistics();
+        statistics.attach(graph);
+
+        Interest imported = new Interest(7, "Interest7");
+        Interest indexed = new Interest(7, "Interest7");
+        Interest other = new Interest(8, "Interest8");
+        graph.insertEdge(user1, user2, new RelationshipShared(Arrays.asList(imported, other)));
+        graph.insertEdge(user2, user3, new RelationshipShared(Collections.singletonList(indexed)));
+        Edge<Relationship, User> edge = graph.insertEdge(user3, user1,
+                new RelationshipShared(Arrays.asList(indexed, other)));
+
+        Map<Interest, Integer> top = statistics.topInterestsStats(graph, 5);
+        assertEquals(2, top.size());
+        assertEquals(Arrays.asList(7, 8), top.keySet().stream().map(Interest::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(3, 2), new ArrayList<>(top.values()));
+
+        graph.removeEdge(edge);
+        top = statistics.topInterestsStats(graph, 5);
+        assertEquals(Arrays.asList(7, 8), top.keySet().stream().map(Interest::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(2, 1), new ArrayList<>(top.values()));
+    }
+
+    /**
+     * Test of topK method, of class Statistics.
+     */
+    @Test
+    void topK() {
+        List<Integer> numbers = Arrays.asList(7, 3, 9, 1, 9, 4, 8);
+
+        assertEquals(Arrays.asList(9, 9, 8), Statistics.topK(numbers, 3, Comparator.reverseOrder()));
+        assertEquals(Arrays.asList(1, 3), Statistics.topK(numbers, 2, Comparator.naturalOrder()));
+        assertEquals(7, Statistics.topK(numbers, 10, Comparator.naturalOrder()).size());
+        assertTrue(Statistics.topK(numbers, 0, Comparator.naturalOrder()).isEmpty());
+    }
+
+    /**
+     * Test of getInterestIndex method, of class SocialNetwork, comparing the
+     * shared interests of every pair of users with the interest lists.
+     */
+    @Test
+    void getInterestIndex_sharedInterests() {
+        InterestIndex index = socialNetwork.getInterestIndex();
+        Collection<Interest> interests = socialNetwork.getInterests().values();
+
+        for (int id1 : socialNetwork.getUsers().keySet()) {
+            for (int id2 : socialNetwork.getUsers().keySet()) {
+                Set<Interest> expResult = interests.stream()
+                        .filter(interest -> interest.userIds().anyMatch(id -> id == id1)
+                                && interest.userIds().anyMatch(id -> id == id2))
+                        .collect(Collectors.toSet());
+
+                assertEquals(expResult, new HashSet<>(index.sharedInterests(id1, id2)));
+                assertEquals(!expResult.isEmpty(), index.shareInterests(id1, id2));
+            }
+        }
+    }
+
+    /**
+     * Test of readTable method, of class ReadData, comparing the tables read
+     * with the maps read by readData.
+     */
+    @Test
+    void readTable_sameAsReadData() {
+        for (String filename : Arrays.asList("user_names.csv", "relationships.csv",
+                "interest_names.csv", "interests.csv")) {
+            boolean withNames = filename.endsWith("names.csv");
+            HashMap<String, ArrayList<String>> expResult = ReadData.readData(filename);
+            CsvTable result = ReadData.readTable(filename, withNames);
+
+            assertEquals(expResult.size(), result.size());
+            for (int row = 0; row < result.size(); row++) {
+                ArrayList<String> expValues = expResult.get(String.valueOf(result.getKey(row)));
+                if (withNames) {
+                    assertEquals(expValues.get(0), result.getName(row));
+                } else {
+                    int[] values = result.valuesOf(result.getKey(row));
+                    assertEquals(expValues, Arrays.stream(values).mapToObj(String::valueOf)
+                            .collect(Collectors.toList()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of readTable method, of class ReadData, reading the files in small
+     * chunks parsed in parallel.
+     */
+    @Test
+    void readTable_chunks() {
+        for (String filename : Arrays.asList("user_names.csv", "relationships.csv")) {
+            boolean withNames = filename.endsWith("names.csv");
+            CsvTable expResult = ReadData.readTable(filename, withNames);
+            CsvTable result = ReadData.readTable(filename, withNames, 37);
+
+            assertEquals(expResult.size(), result.size());
+            assertEquals(expResult.numValues(), result.numValues());
+            for (int row = 0; row < result.size(); row++) {
+                assertEquals(expResult.getKey(row), result.getKey(row));
+                assertEquals(expResult.getName(row), result.getName(row));
+                assertArrayEquals(expResult.valuesOf(expResult.getKey(row)), result.valuesOf(result.getKey(row)));
+            }
+        }
+    }
+
+    /**
+     * Test of write and open methods, of class GraphSnapshot.
+     */
+    @Test
+    void graphSnapshot_roundTrip() throws IOException {
+        DirectGraph<User, Relationship> graph = socialNetwork.constructModelTotal();
+        Path path = Files.createTempFile("snapshot", ".bin");
+        try {
+            GraphSnapshot.write(graph, path);
+            GraphSnapshot snapshot = GraphSnapshot.open(path);
+            DirectGraph<User, Relationship> result = snapshot.toGraph();
+
+            assertEquals(graph.numVertices(), snapshot.numUsers());
+            assertEquals(graph.numEdges(), snapshot.numEdges());
+            assertEquals(graph.numVertices(), result.numVertices());
+            assertEquals(graph.numEdges(), result.numEdges());
+            assertEquals(summary(graph), summary(result));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Test of open method, of class GraphSnapshot, with a file that is not a snapshot.
+     */
+    @Test
+    void graphSnapshot_invalidFile() throws IOException {
+        Path path = Files.createTempFile("snapshot", ".bin");
+        try {
+            Files.write(path, new byte[100]);
+            assertThrows(IOException.class, () -> GraphSnapshot.open(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Test of open and getUser methods, of class GraphSnapshot, with a
+     * truncated snapshot and with a snapshot whose first user type was
+     * corrupted, which is only detected when that user is read.
+     */
+    @Test
+    void graphSnapshot_corruptFile() throws IOException {
+        Path path = Files.createTempFile("snapshot", ".bin");
+        try {
+            GraphSnapshot.write(socialNetwork.constructModelTotal(), path);
+            byte[] bytes = Files.readAllBytes(path);
+
+            Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+            assertThrows(IOException.class, () -> GraphSnapshot.open(path));
+
+            ByteBuffer header = ByteBuffer.wrap(bytes);
+            header.putInt((int) header.getLong(40) + 8, Type.values().length);
+            Files.write(path, bytes);
+            GraphSnapshot snapshot = GraphSnapshot.open(path);
+            assertNotNull(snapshot.getUser(1));
+            assertThrows(IOException.class, () -> snapshot.getUser(0));
+            assertThrows(IOException.class, snapshot::toGraph);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Test of toGraph method, of class GraphSnapshot, with two users with the
+     * same id.
+     */
+    @Test
+    void graphSnapshot_duplicateUserIds() throws IOException {
+        DirectGraph<User, Relationship> graph = new DirectGraph<>();
+        graph.insertVertex(new User("Ana", 7, Type.ADICIONADO));
+        graph.insertVertex(new User("Rui", 7, Type.ADICIONADO));
+        Path path = Files.createTempFile("snapshot", ".bin");
+        try {
+            GraphSnapshot.write(graph, path);
+            GraphSnapshot snapshot = GraphSnapshot.open(path);
+            assertEquals(2, snapshot.numUsers());
+            assertThrows(IOException.class, snapshot::toGraph);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static List<String> summary(DirectGraph<User, Relationship> graph) {
+        return graph.edges().stream().map(edge -> {
+            Relationship relationship = edge.element();
+            Collection<Interest> interests = relationship instanceof RelationshipIndirect
+                    ? ((RelationshipIndirect) relationship).getListOfInterests() : new ArrayList<>();
+            return edge.vertices()[0].element().getID() + ">" + edge.vertices()[1].element().getID() + " "
+                    + relationship.getClass().getSimpleName() + " "
+                    + interests.stream().map(Interest::getId).sorted().collect(Collectors.toList());
+        }).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Test of restoreState method, of class Caretaker, undoing users added
+     * with the iterative model one at a time.
+     */
+    @Test
+    void restoreState_iterativeModel() {
+        Caretaker caretaker = new Caretaker(socialNetwork);
+        DirectGraph<User, Relationship> graph = socialNetwork.getGraph();
+        List<List<String>> states = new ArrayList<>();
+
+        for (int id : new int[]{1, 2, 5, 14, 30}) {
+            states.add(graphState(graph));
+            caretaker.saveState();
+            socialNetwork.constructModelIterative(id);
+        }
+        for (int i = states.size() - 1; i >= 0; i--) {
+            caretaker.restoreState();
+            assertSame(graph, socialNetwork.getGraph());
+            assertEquals(states.get(i), graphState(graph));
+        }
+        assertThrows(NoMementoException.class, caretaker::restoreState);
+    }
+
+    /**
+     * Test of restoreState method, of class Caretaker, with more states than
+     * the checkpoint interval, new changes after an undo and a cleared graph.
+     */
+    @Test
+    void restoreState_checkpoints() {
+        Caretaker caretaker = new Caretaker(socialNetwork);
+        DirectGraph<User, Relationship> graph = socialNetwork.getGraph();
+        List<List<String>> states = new ArrayList<>();
+
+        for (int id = 1; id <= 40; id++) {
+            states.add(graphState(graph));
+            caretaker.saveState();
+            socialNetwork.constructModelIterative(id);
+            if (id % 10 == 0) {
+                caretaker.restoreState();
+                assertEquals(states.remove(states.size() - 1), graphState(graph));
+            }
+        }
+        states.add(graphState(graph));
+        caretaker.saveState();
+        graph.clear();
+
+        while (!states.isEmpty()) {
+            caretaker.restoreState();
+            assertEquals(states.remove(states.size() - 1), graphState(graph));
+        }
+    }
+
+    /**
+     * Test of saveState method, of class Caretaker, with a small limit for the
+     * size of the saved states.
+     */
+    @Test
+    void saveState_maxBytes() {
+        Caretaker caretaker = new Caretaker(socialNetwork, 2000);
+
+        for (int id = 1; id <= 30; id++) {
+            caretaker.saveState();
+            socialNetwork.constructModelIterative(id);
+        }
+        assertTrue(caretaker.size() < 30);
+        assertTrue(caretaker.size() > 0);
+    }
+
+    private static List<String> graphState(DirectGraph<User, Relationship> graph) {
+        List<String> state = summary(graph);
+        graph.vertices().forEach(userVertex -> state.add(userVertex.element().getID() + " "
+                + userVertex.element().getType()));
+        Collections.sort(state);
+        return state;
+    }
+}
@@ -0,0 +1,125 @@
+package smartgraph.view.graphview;
+
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForceLayoutTest {
+    private static final int SIZE = 300;
+    private static final double REPULSION = 25000;
+    private static final double ATTRACTION = 30;
+    private static final double SCALE = 10;
+
+    private double[] x;
+    private double[] y;
+    private int[] offsets;
+    private int[] targets;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        x = new double[SIZE];
+        y = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            x[i] = random.nextDouble() * 800;
+            y[i] = random.nextDouble() * 600;
+        }
+        //ring, with the first two vertices on the same position
+        x[1] = x[0];
+        y[1] = y[0];
+        offsets = new int[SIZE + 1];
+        targets = new int[2 * SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            targets[2 * i] = (i + 1) % SIZE;
+            targets[2 * i + 1] = (i + SIZE - 1) % SIZE;
+            offsets[i + 1] = 2 * i + 2;
+        }
+    }
+
+    private ForceLayout layout(double theta) {
+        ForceLayout layout = new ForceLayout(REPULSION, ATTRACTION, SCALE, theta);
+        layout.setGraph(SIZE, offsets, targets);
+        for (int i = 0; i < SIZE; i++) {
+            layout.setPosition(i, x[i], y[i]);
+        }
+        layout.computeForces();
+        return layout;
+    }
+
+    /**
+     * Force on vertex i computed as in the original all-pairs layout.
+     */
+    private Point2D exactForce(int i) {
+        Point2D force = Point2D.ZERO;
+        Point2D p = new Point2D(x[i], y[i]);
+        for (int j = 0; j < SIZE; j++) {
+            if (j != i) {
+                force = force.add(UtilitiesPoint2D.repellingForce(p, new Point2D(x[j], y[j]), REPULSION));
+            }
+        }
+        for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+            force = force.add(UtilitiesPoint2D.attractiveForce(p, new Point2D(x[targets[k]], y[targets[k]]),
+                    SIZE, ATTRACTION, SCALE));
+        }
+        return force;
+    }
+
+    /**
+     * Test of computeForces method, of class ForceLayout, without approximation.
+     */
+    @Test
+    void computeForces_exact() {
+        ForceLayout layout = layout(0);
+        for (int i = 0; i < SIZE; i++) {
+            Point2D expected = exactForce(i);
+            assertEquals(expected.getX(), layout.getForceX(i), 1e-6);
+            assertEquals(expected.getY(), layout.getForceY(i), 1e-6);
+        }
+    }
+
+    /**
+     * Test of computeForces method, of class ForceLayout, with the Barnes-Hut
+     * approximation.
+     */
+    @Test
+    void computeForces_barnesHut() {
+        ForceLayout layout = layout(0.5);
+        double error = 0;
+        double total = 0;
+        for (int i = 0; i < SIZE; i++) {
+            Point2D expected = exactForce(i);
+            error += expected.distance(layout.getForceX(i), layout.getForceY(i));
+            total += expected.magnitude();
+        }
+        assertTrue(error < 0.05 * total);
+    }
+
+    /**
+     * Test of step method, of class ForceLayout, until the layout converges.
+     */
+    @Test
+    void step_converges() {
+        ForceLayout layout = layout(0.8);
+        layout.setCooling(0.95, 0.5);
+        int iterations = 0;
+        while (!layout.isConverged() && iterations < 2000) {
+            layout.step(800, 600, 10);
+            iterations++;
+        }
+        assertTrue(layout.isConverged());
+        for (int i = 0; i < SIZE; i++) {
+            assertTrue(layout.getX(i) >= 10 && layout.getX(i) <= 790);
+            assertTrue(layout.getY(i) >= 10 && layout.getY(i) <= 590);
+        }
+
+        layout.heat();
+        assertFalse(layout.isConverged());
+        layout.setPosition(0, 400, 300);
+        layout.step(800, 600, 10);
+        assertFalse(layout.isConverged());
+    }
+}
@@ -1,14 +1,30 @@
 package com.pa.proj2020.adts.graph;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Stack;
 
 /**
  * Classe responsável por armazenar todos os Mementos gerados pelo Originator.
  * Contêm as referências de todos os objetos Memento associados ao Originator.
+ * O tamanho total dos Mementos guardados e limitado: quando o limite e
+ * ultrapassado sao descartados os Mementos mais antigos. O tamanho de cada
+ * Memento e o tamanho da sua codificacao ({@link Memento#getState()}) e nao a
+ * memoria que ocupa: um checkpoint guarda referencias para os utilizadores e
+ * relacionamentos do grafo, que sao partilhados com o grafo e os outros Mementos
  */
 public class Caretaker {
+    /**
+     * Limite por omissao do tamanho total da codificacao dos Mementos
+     * guardados, em bytes
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
     private final SocialNetwork socialNetwork;
     private final Stack<Memento> undo;
+    private final long maxBytes;
+    private final Deque<Integer> sizes;
+    private long bytes;
 
     /**
      * Inicializa um objeto Caretaker para uma socialNetwork (objeto Memento)
@@ -16,15 +32,41 @@ public class Caretaker {
      * @param socialNetwork representa o objeto Memento associado ao Originator
      */
     public Caretaker(SocialNetwork socialNetwork) {
+        this(socialNetwork, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Inicializa um objeto Caretaker para uma socialNetwork com um limite para
+     * o tamanho total dos Mementos guardados
+     *
+     * @param socialNetwork representa o objeto Memento associado ao Originator
+     * @param maxBytes      representa o limite do tamanho da codificacao dos Mementos em bytes
+     */
+    public Caretaker(SocialNetwork socialNetwork, long maxBytes) {
         this.socialNetwork = socialNetwork;
+        this.maxBytes = maxBytes;
         undo = new Stack<>();
+        sizes = new ArrayDeque<>();
     }
 
     /**
-     * Método que permite guardar o estado da SocialNetwork
+     * Método que permite guardar o estado da SocialNetwork. Descarta os
+     * estados mais antigos se o tamanho total dos estados anteriores ao novo
+     * ultrapassar o limite. O estado mais recente continua a registar
+     * operacoes, por isso o seu tamanho so e somado quando e guardado um novo
      */
     public void saveState() {
+        if (!undo.empty()) {
+            int size = undo.peek().getState().length;
+            sizes.addLast(size);
+            bytes += size;
+        }
         undo.push(socialNetwork.createMemento());
+
+        while (bytes > maxBytes && undo.size() > 1) {
+            undo.remove(0);
+            bytes -= sizes.removeFirst();
+        }
     }
 
     /**
@@ -38,5 +80,17 @@ public class Caretaker {
         }
 
         socialNetwork.setMemento(undo.pop());
+        if (!sizes.isEmpty()) {
+            bytes -= sizes.removeLast();
+        }
+    }
+
+    /**
+     * Método que retorna o numero de estados guardados
+     *
+     * @return o numero de estados guardados
+     */
+    public int size() {
+        return undo.size();
     }
 }
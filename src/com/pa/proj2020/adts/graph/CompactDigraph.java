@@ -0,0 +1,672 @@
+package com.pa.proj2020.adts.graph;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Implementacao compacta de um grafo dirigido em que cada vertice e
+ * identificado por uma chave inteira (por exemplo o id de um utilizador).
+ * <p>
+ * As arestas sao guardadas em arrays primitivos paralelos (origem, destino e
+ * elemento) e a adjacencia e indexada no formato CSR (compressed sparse row):
+ * um array de offsets por vertice e um array com as arestas de saida (e outro
+ * com as de entrada) agrupadas por vertice. O indice e reconstruido em O(V + E)
+ * na primeira leitura depois de se inserirem vertices ou arestas, pelo que esta
+ * implementacao e adequada a grafos carregados em bloco e depois consultados.
+ * <p>
+ * Ao contrario de {@link DirectGraph}, nao e verificado se ja existe uma aresta
+ * com o mesmo elemento, e as posicoes das arestas e vertices removidos nao sao
+ * reutilizadas.
+ *
+ * @param <V> tipo do elemento guardado num vertice
+ * @param <E> tipo do elemento guardado numa aresta
+ */
+public class CompactDigraph<V, E> implements Digraph<V, E>, Serializable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final KeyFunction<V> keyFunction;
+
+    /* Indice das chaves: um array indexado pela chave enquanto as chaves forem
+       densas, se nao uma tabela de dispersao com as chaves e as posicoes */
+    private int[] indexByKey;
+    private int[] hashKeys;
+    private int[] hashIndexes;
+    private int hashUsed;
+    private Object[] vertexElements;
+    private Vertex<V>[] vertexHandles;
+    private int vertexSlots;
+    private int numVertices;
+
+    private int[] edgeSource;
+    private int[] edgeTarget;
+    private Object[] edgeElements;
+    private int edgeSlots;
+    private int numEdges;
+
+    private int[] outOffsets;
+    private int[] outEdges;
+    private int[] inOffsets;
+    private int[] inEdges;
+    private boolean indexValid;
+
+    /**
+     * Cria um grafo compacto vazio
+     *
+     * @param keyFunction funcao que devolve a chave inteira (nao negativa) de um
+     *                    elemento de um vertice
+     */
+    public CompactDigraph(KeyFunction<V> keyFunction) {
+        this(keyFunction, INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Cria um grafo compacto vazio com capacidade reservada para um numero de
+     * vertices e de arestas, evitando copias dos arrays durante um carregamento
+     * em bloco
+     *
+     * @param keyFunction      funcao que devolve a chave inteira (nao negativa) de
+     *                         um elemento de um vertice
+     * @param expectedVertices numero de vertices esperado
+     * @param expectedEdges    numero de arestas esperado
+     */
+    public CompactDigraph(KeyFunction<V> keyFunction, int expectedVertices, int expectedEdges) {
+        if (keyFunction == null) {
+            throw new IllegalArgumentException();
+        }
+        this.keyFunction = keyFunction;
+        int vertexCapacity = Math.max(expectedVertices, 1);
+        int edgeCapacity = Math.max(expectedEdges, 1);
+
+        indexByKey = new int[vertexCapacity];
+        Arrays.fill(indexByKey, -1);
+        vertexElements = new Object[vertexCapacity];
+        vertexHandles = newVertexArray(vertexCapacity);
+
+        edgeSource = new int[edgeCapacity];
+        edgeTarget = new int[edgeCapacity];
+        edgeElements = new Object[edgeCapacity];
+    }
+
+    /**
+     * Retorna o vertice com uma determinada chave
+     *
+     * @param key chave do vertice
+     * @return o vertice com a chave fornecida ou null se nao existir
+     */
+    public Vertex<V> vertexOf(int key) {
+        int index = indexOfKey(key);
+        return index < 0 ? null : vertexHandles[index];
+    }
+
+    /**
+     * Retorna o numero de arestas que saem de um vertice
+     *
+     * @param outbound vertice outbound
+     * @return numero de arestas que saem do vertice
+     */
+    public int outDegree(Vertex<V> outbound) {
+        int index = checkVertice(outbound).index;
+        ensureIndex();
+        return countAlive(outEdges, outOffsets, index);
+    }
+
+    /**
+     * Retorna o numero de arestas que entram num vertice
+     *
+     * @param inbound vertice inbound
+     * @return numero de arestas que entram no vertice
+     */
+    public int inDegree(Vertex<V> inbound) {
+        int index = checkVertice(inbound).index;
+        ensureIndex();
+        return countAlive(inEdges, inOffsets, index);
+    }
+
+    @Override
+    public int numVertices() {
+        return numVertices;
+    }
+
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public Collection<Vertex<V>> vertices() {
+        List<Vertex<V>> list = new ArrayList<>(numVertices);
+        for (int i = 0; i < vertexSlots; i++) {
+            if (vertexElements[i] != null) {
+                list.add(vertexHandles[i]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Retorna uma colecao das arestas existentes. A colecao nao pode ser
+     * modificada e reflete as arestas inseridas ou removidas posteriormente
+     *
+     * @return colecao de arestas existentes
+     */
+    @Override
+    public Collection<Edge<E, V>> edges() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Edge<E, V>> iterator() {
+                return new Iterator<>() {
+                    private int next = nextAlive(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < edgeSlots;
+                    }
+
+                    @Override
+                    public Edge<E, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        CompactEdge edge = new CompactEdge(next);
+                        next = nextAlive(next + 1);
+                        return edge;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return numEdges;
+            }
+        };
+    }
+
+    @Override
+    public Collection<Edge<E, V>> incidentEdges(Vertex<V> inbound) throws InvalidVertexException {
+        CompactVertex v = checkVertice(inbound);
+        ensureIndex();
+        return edgesOf(inEdges, inOffsets, v.index);
+    }
+
+    @Override
+    public Collection<Edge<E, V>> outboundEdges(Vertex<V> outbound) throws InvalidVertexException {
+        CompactVertex v = checkVertice(outbound);
+        ensureIndex();
+        return edgesOf(outEdges, outOffsets, v.index);
+    }
+
+    /**
+     * Verifica se dois vertices sao adjacentes, i.e., se existe uma aresta num
+     * dos sentidos entre eles, tal como em {@link DirectGraph}
+     *
+     * @param outbound vértice outbound
+     * @param inbound  vértice inbound
+     * @return true se forem adjacentes ou false se nao forem
+     * @throws InvalidVertexException se um ou ambos os vertices forem inválidos
+     */
+    @Override
+    public boolean areAdjacent(Vertex<V> outbound, Vertex<V> inbound) throws InvalidVertexException {
+        int u = checkVertice(outbound).index;
+        int v = checkVertice(inbound).index;
+        ensureIndex();
+        return hasEdge(u, v) || hasEdge(v, u);
+    }
+
+    @Override
+    public Vertex<V> opposite(Vertex<V> v, Edge<E, V> e) throws InvalidVertexException, InvalidEdgeException {
+        int index = checkVertice(v).index;
+        int id = checkEdge(e).id;
+        if (edgeSource[id] == index) {
+            return vertexHandles[edgeTarget[id]];
+        } else if (edgeTarget[id] == index) {
+            return vertexHandles[edgeSource[id]];
+        }
+
+        throw new InvalidVertexException("INVALID VERTEX");
+    }
+
+    @Override
+    public Vertex<V> insertVertex(V vElement) throws InvalidVertexException {
+        if (vElement == null) {
+            throw new InvalidVertexException("NULL VERTEX");
+        }
+        int key = keyOf(vElement);
+        if (indexOfKey(key) >= 0) {
+            throw new InvalidVertexException("EXISTING VERTEX");
+        }
+
+        if (vertexSlots == vertexElements.length) {
+            int capacity = vertexSlots * 2;
+            vertexElements = Arrays.copyOf(vertexElements, capacity);
+            vertexHandles = Arrays.copyOf(vertexHandles, capacity);
+        }
+        int index = vertexSlots++;
+        vertexElements[index] = vElement;
+        vertexHandles[index] = new CompactVertex(index);
+        putKey(key, index);
+        numVertices++;
+        indexValid = false;
+
+        return vertexHandles[index];
+    }
+
+    @Override
+    public Edge<E, V> insertEdge(Vertex<V> outbound, Vertex<V> inbound, E edgeElement)
+            throws InvalidVertexException, InvalidEdgeException {
+        if (edgeElement == null) {
+            throw new InvalidEdgeException("NULL EDGE");
+        }
+        int source = checkVertice(outbound).index;
+        int target = checkVertice(inbound).index;
+
+        if (edgeSlots == edgeElements.length) {
+            int capacity = edgeSlots * 2;
+            edgeSource = Arrays.copyOf(edgeSource, capacity);
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeElements = Arrays.copyOf(edgeElements, capacity);
+        }
+        int id = edgeSlots++;
+        edgeSource[id] = source;
+        edgeTarget[id] = target;
+        edgeElements[id] = edgeElement;
+        numEdges++;
+        indexValid = false;
+
+        return new CompactEdge(id);
+    }
+
+    @Override
+    public Edge<E, V> insertEdge(V outboundElement, V inboundElement, E edgeElement)
+            throws InvalidVertexException, InvalidEdgeException {
+        if (outboundElement == null || inboundElement == null) {
+            throw new InvalidVertexException("NULL VERTEX");
+        }
+        return insertEdge(vertexOf(keyOf(outboundElement)), vertexOf(keyOf(inboundElement)), edgeElement);
+    }
+
+    @Override
+    public V removeVertex(Vertex<V> v) throws InvalidVertexException {
+        int index = checkVertice(v).index;
+        ensureIndex();
+
+        removeAll(outEdges, outOffsets, index);
+        removeAll(inEdges, inOffsets, index);
+
+        V element = elementOf(index);
+        vertexElements[index] = null;
+        removeKey(keyOf(element));
+        numVertices--;
+
+        return element;
+    }
+
+    @Override
+    public E removeEdge(Edge<E, V> e) throws InvalidEdgeException {
+        int id = checkEdge(e).id;
+        E element = edgeElementOf(id);
+        edgeElements[id] = null;
+        numEdges--;
+        return element;
+    }
+
+    @Override
+    public V replace(Vertex<V> v, V newElement) throws InvalidVertexException {
+        int index = checkVertice(v).index;
+        if (newElement == null) {
+            throw new InvalidVertexException("NULL VERTEX");
+        }
+        int newKey = keyOf(newElement);
+        int existing = indexOfKey(newKey);
+        if (existing >= 0 && existing != index) {
+            throw new InvalidVertexException("EXISTING VERTEX");
+        }
+
+        V element = elementOf(index);
+        removeKey(keyOf(element));
+        vertexElements[index] = newElement;
+        putKey(newKey, index);
+
+        return element;
+    }
+
+    @Override
+    public E replace(Edge<E, V> e, E newElement) throws InvalidEdgeException {
+        int id = checkEdge(e).id;
+        if (newElement == null) {
+            throw new InvalidEdgeException("NULL EDGE");
+        }
+        E element = edgeElementOf(id);
+        edgeElements[id] = newElement;
+        return element;
+    }
+
+    /**
+     * Reconstroi, se necessario, o indice CSR das arestas de saida e de entrada
+     * de cada vertice atraves de uma ordenacao por contagem, em O(V + E)
+     */
+    private void ensureIndex() {
+        if (indexValid) {
+            return;
+        }
+        int[] outCount = new int[vertexSlots + 1];
+        int[] inCount = new int[vertexSlots + 1];
+        int alive = 0;
+        for (int id = 0; id < edgeSlots; id++) {
+            if (edgeElements[id] != null) {
+                outCount[edgeSource[id] + 1]++;
+                inCount[edgeTarget[id] + 1]++;
+                alive++;
+            }
+        }
+        for (int i = 0; i < vertexSlots; i++) {
+            outCount[i + 1] += outCount[i];
+            inCount[i + 1] += inCount[i];
+        }
+        outOffsets = outCount.clone();
+        inOffsets = inCount.clone();
+
+        outEdges = new int[alive];
+        inEdges = new int[alive];
+        for (int id = 0; id < edgeSlots; id++) {
+            if (edgeElements[id] != null) {
+                outEdges[outCount[edgeSource[id]]++] = id;
+                inEdges[inCount[edgeTarget[id]]++] = id;
+            }
+        }
+        indexValid = true;
+    }
+
+    private boolean hasEdge(int source, int target) {
+        for (int i = outOffsets[source]; i < outOffsets[source + 1]; i++) {
+            int id = outEdges[i];
+            if (edgeTarget[id] == target && edgeElements[id] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Collection<Edge<E, V>> edgesOf(int[] edgeIds, int[] offsets, int index) {
+        List<Edge<E, V>> list = new ArrayList<>(offsets[index + 1] - offsets[index]);
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            if (edgeElements[edgeIds[i]] != null) {
+                list.add(new CompactEdge(edgeIds[i]));
+            }
+        }
+        return list;
+    }
+
+    private int countAlive(int[] edgeIds, int[] offsets, int index) {
+        int count = 0;
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            if (edgeElements[edgeIds[i]] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void removeAll(int[] edgeIds, int[] offsets, int index) {
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            if (edgeElements[edgeIds[i]] != null) {
+                edgeElements[edgeIds[i]] = null;
+                numEdges--;
+            }
+        }
+    }
+
+    private int nextAlive(int id) {
+        while (id < edgeSlots && edgeElements[id] == null) {
+            id++;
+        }
+        return id;
+    }
+
+    private int keyOf(V element) {
+        int key = keyFunction.keyOf(element);
+        if (key < 0) {
+            throw new InvalidVertexException("INVALID KEY");
+        }
+        return key;
+    }
+
+    private int indexOfKey(int key) {
+        if (hashKeys != null) {
+            int slot = slotOf(key);
+            return hashKeys[slot] == key ? hashIndexes[slot] : -1;
+        }
+        return key >= 0 && key < indexByKey.length ? indexByKey[key] : -1;
+    }
+
+    /**
+     * Associa uma chave a uma posicao. O array indexado pela chave so cresce
+     * enquanto as chaves forem densas, como no {@link CsvTable}; uma chave
+     * maior passa o indice para a tabela de dispersao, para que um unico id
+     * muito grande nao reserve memoria proporcional ao seu valor
+     *
+     * @param key   chave do vertice
+     * @param index posicao do vertice
+     */
+    private void putKey(int key, int index) {
+        if (hashKeys == null && key >= indexByKey.length) {
+            if (key < 2L * vertexSlots + 1024) {
+                int length = indexByKey.length;
+                indexByKey = Arrays.copyOf(indexByKey, Math.max(key + 1, Math.min(length * 2, 2 * vertexSlots + 1024)));
+                Arrays.fill(indexByKey, length, indexByKey.length, -1);
+            } else {
+                int[] dense = indexByKey;
+                indexByKey = null;
+                resizeHash(Math.max(INITIAL_CAPACITY, 4 * vertexSlots));
+                for (int k = 0; k < dense.length; k++) {
+                    if (dense[k] >= 0) {
+                        putHashKey(k, dense[k]);
+                    }
+                }
+            }
+        }
+        if (hashKeys != null) {
+            putHashKey(key, index);
+        } else {
+            indexByKey[key] = index;
+        }
+    }
+
+    private void removeKey(int key) {
+        if (hashKeys != null) {
+            int slot = slotOf(key);
+            if (hashKeys[slot] == key) {
+                hashIndexes[slot] = -1;
+            }
+        } else if (key < indexByKey.length) {
+            indexByKey[key] = -1;
+        }
+    }
+
+    /**
+     * Tabela de dispersao com enderecamento aberto. As chaves removidas ficam
+     * na tabela com a posicao -1, para nao interromperem as sequencias de
+     * procura, e sao reutilizadas se a chave voltar a ser inserida
+     */
+    private void putHashKey(int key, int index) {
+        int slot = slotOf(key);
+        if (hashKeys[slot] != key) {
+            if (2 * (hashUsed + 1) > hashKeys.length) {
+                resizeHash(hashKeys.length * 2);
+                slot = slotOf(key);
+            }
+            hashKeys[slot] = key;
+            hashUsed++;
+        }
+        hashIndexes[slot] = index;
+    }
+
+    /**
+     * Retorna a posicao da chave na tabela ou a posicao livre onde deve ficar
+     */
+    private int slotOf(int key) {
+        int mask = hashKeys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (hashKeys[slot] != -1 && hashKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resizeHash(int minimum) {
+        int[] oldKeys = hashKeys;
+        int[] oldIndexes = hashIndexes;
+        int capacity = Integer.highestOneBit(Math.max(minimum, INITIAL_CAPACITY) - 1) << 1;
+        hashKeys = new int[capacity];
+        hashIndexes = new int[capacity];
+        Arrays.fill(hashKeys, -1);
+        hashUsed = 0;
+        if (oldKeys != null) {
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != -1 && oldIndexes[slot] >= 0) {
+                    putHashKey(oldKeys[slot], oldIndexes[slot]);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Vertex<V>[] newVertexArray(int size) {
+        return (Vertex<V>[]) new Vertex<?>[size];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V elementOf(int index) {
+        return (V) vertexElements[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private E edgeElementOf(int id) {
+        return (E) edgeElements[id];
+    }
+
+    /**
+     * Verifica se um vertice é valido
+     *
+     * @param vertice vertice que pretendemos validar
+     * @return o vertice validado ou caso este seja null ou nao exista
+     */
+    private CompactVertex checkVertice(Vertex<V> vertice) {
+        if (vertice == null) {
+            throw new InvalidVertexException("NULL VERTEX");
+        }
+        if (!(vertice instanceof CompactDigraph.CompactVertex)) {
+            throw new InvalidVertexException("VERTEX DOESNT EXIST");
+        }
+        CompactVertex v = (CompactVertex) vertice;
+        if (v.graph() != this || vertexElements[v.index] == null) {
+            throw new InvalidVertexException("VERTEX DOESNT EXIST");
+        }
+        return v;
+    }
+
+    /**
+     * Verifica se uma aresta é valida
+     *
+     * @param edge aresta que pretendemos validar
+     * @return a aresta validada ou caso seja null ou nao exista
+     */
+    private CompactEdge checkEdge(Edge<E, V> edge) {
+        if (edge == null) {
+            throw new InvalidEdgeException("NULL EDGE");
+        }
+        if (!(edge instanceof CompactDigraph.CompactEdge)) {
+            throw new InvalidEdgeException("EDGE DOESNT EXIST");
+        }
+        CompactEdge e = (CompactEdge) edge;
+        if (e.graph() != this || edgeElements[e.id] == null) {
+            throw new InvalidEdgeException("EDGE DOESNT EXIST");
+        }
+        return e;
+    }
+
+    /**
+     * Classe auxiliar que representa um vertice atraves da sua posicao nos
+     * arrays do grafo
+     */
+    private class CompactVertex implements Vertex<V>, Serializable {
+
+        private final int index;
+
+        public CompactVertex(int index) {
+            this.index = index;
+        }
+
+        private CompactDigraph<V, E> graph() {
+            return CompactDigraph.this;
+        }
+
+        @Override
+        public V element() {
+            V element = elementOf(index);
+            if (element == null) {
+                throw new InvalidVertexException("NULL VERTEX");
+            }
+            return element;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(vertexElements[index]);
+        }
+    }
+
+    /**
+     * Classe auxiliar que representa uma aresta atraves da sua posicao nos
+     * arrays do grafo. Sao criadas quando pedidas, por isso duas instancias da
+     * mesma aresta sao iguais
+     */
+    private class CompactEdge implements Edge<E, V>, Serializable {
+
+        private final int id;
+
+        public CompactEdge(int id) {
+            this.id = id;
+        }
+
+        private CompactDigraph<V, E> graph() {
+            return CompactDigraph.this;
+        }
+
+        @Override
+        public E element() {
+            E element = edgeElementOf(id);
+            if (element == null) {
+                throw new InvalidEdgeException("NULL EDGE");
+            }
+            return element;
+        }
+
+        @Override
+        public Vertex<V>[] vertices() {
+            Vertex<V>[] vertices = newVertexArray(2);
+            vertices[0] = vertexHandles[edgeSource[id]];
+            vertices[1] = vertexHandles[edgeTarget[id]];
+            return vertices;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CompactDigraph.CompactEdge)) return false;
+            CompactDigraph<?, ?>.CompactEdge other = (CompactDigraph<?, ?>.CompactEdge) o;
+            return id == other.id && graph() == other.graph();
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(edgeElements[id]);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.pa.proj2020.adts.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Classe que guarda as linhas de um ficheiro csv no formato usado pelos
+ * ficheiros de entrada, em que o primeiro campo e um id. Os ids seguintes de
+ * cada linha ficam num unico array de inteiros, indexado pelo array de
+ * offsets das linhas, e o segundo campo pode ser guardado como nome em vez de
+ * ser lido como id (ficheiros user_names.csv e interest_names.csv)
+ */
+public class CsvTable implements Serializable {
+    private static final int[] EMPTY = new int[0];
+
+    private final int[] keys;
+    private final int[] offsets;
+    private final int[] values;
+    private final String[] names;
+    private int[] rowByKey;
+    private long[] sortedKeys;
+
+    /**
+     * Cria uma tabela vazia
+     */
+    public CsvTable() {
+        this(EMPTY, new int[]{0}, EMPTY, null);
+    }
+
+    /**
+     * Cria uma tabela com as linhas lidas
+     *
+     * @param keys    primeiro campo de cada linha
+     * @param offsets posicao em values do primeiro id de cada linha, com mais uma posicao no fim
+     * @param values  ids seguintes de todas as linhas
+     * @param names   segundo campo de cada linha ou null se a tabela so tem ids
+     */
+    CsvTable(int[] keys, int[] offsets, int[] values, String[] names) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.values = values;
+        this.names = names;
+        indexKeys();
+    }
+
+    /**
+     * Indexa as linhas pelo primeiro campo. Se os ids forem densos usa um array
+     * indexado pelo id, se nao usa os ids ordenados com a linha nos bits baixos.
+     * Com ids repetidos fica indexada a ultima linha, como no HashMap do ReadData
+     */
+    private void indexKeys() {
+        int max = -1;
+        for (int key : keys) {
+            max = Math.max(max, key);
+        }
+        if (max < 2L * keys.length + 1024) {
+            rowByKey = new int[max + 1];
+            Arrays.fill(rowByKey, -1);
+            for (int row = 0; row < keys.length; row++) {
+                rowByKey[keys[row]] = row;
+            }
+        } else {
+            sortedKeys = new long[keys.length];
+            for (int row = 0; row < keys.length; row++) {
+                sortedKeys[row] = ((long) keys[row] << 32) | row;
+            }
+            Arrays.sort(sortedKeys);
+        }
+    }
+
+    /**
+     * Retorna o numero de linhas
+     *
+     * @return o numero de linhas
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Retorna o numero total de ids lidos depois do primeiro campo
+     *
+     * @return o numero de ids
+     */
+    public int numValues() {
+        return values.length;
+    }
+
+    /**
+     * Retorna o primeiro campo de uma linha
+     *
+     * @param row representa a linha
+     * @return o id da linha
+     */
+    public int getKey(int row) {
+        return keys[row];
+    }
+
+    /**
+     * Retorna o nome de uma linha
+     *
+     * @param row representa a linha
+     * @return o segundo campo da linha ou null se a tabela so tem ids
+     */
+    public String getName(int row) {
+        return names == null ? null : names[row];
+    }
+
+    /**
+     * Retorna a linha com um id no primeiro campo
+     *
+     * @param key representa o id
+     * @return a linha ou -1 se nao existir
+     */
+    public int rowOf(int key) {
+        if (rowByKey != null) {
+            return key >= 0 && key < rowByKey.length ? rowByKey[key] : -1;
+        }
+        int low = 0;
+        int high = sortedKeys.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleKey = (int) (sortedKeys[middle] >> 32);
+            if (middleKey <= key) {
+                if (middleKey == key) {
+                    found = (int) sortedKeys[middle];
+                }
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Retorna o numero de ids de uma linha
+     *
+     * @param row representa a linha
+     * @return o numero de ids depois do primeiro campo
+     */
+    public int rowLength(int row) {
+        return offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * Retorna um id de uma linha
+     *
+     * @param row   representa a linha
+     * @param index posicao do id na linha
+     * @return o id
+     */
+    public int getValue(int row, int index) {
+        return values[offsets[row] + index];
+    }
+
+    /**
+     * Retorna os ids da linha com um id no primeiro campo
+     *
+     * @param key representa o id
+     * @return uma copia dos ids da linha, vazio se a linha nao existir
+     */
+    public int[] valuesOf(int key) {
+        int row = rowOf(key);
+        return row < 0 ? EMPTY : Arrays.copyOfRange(values, offsets[row], offsets[row + 1]);
+    }
+
+    /**
+     * Verifica se a linha com um id no primeiro campo contem outro id
+     *
+     * @param key   representa o id da linha
+     * @param value representa o id procurado
+     * @return true se a linha existir e contiver o id
+     */
+    public boolean contains(int key, int value) {
+        int row = rowOf(key);
+        if (row < 0) {
+            return false;
+        }
+        for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
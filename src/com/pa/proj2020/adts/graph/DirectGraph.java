@@ -1,17 +1,53 @@
 package com.pa.proj2020.adts.graph;
 
+import observer.Subject;
+
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Grafo dirigido em que cada vertice guarda as suas arestas inbound e
+ * outbound. Cada alteracao ao grafo e enviada aos observers como um
+ * {@link GraphEvent}
+ *
+ * @param <V> tipo do elemento guardado num vertice
+ * @param <E> tipo do elemento guardado numa aresta
+ */
+public class DirectGraph<V, E> extends Subject implements Digraph<V, E>, Serializable {
+    private static final long MAX_MATRIX_ENTRIES = 1L << 26;
+    private static final int SOURCES_PER_TASK = 32;
 
-public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
     private final HashMap<V, Vertex<V>> vertices;
+    private final ArrayList<MyVertex> vertexList;
+    private final LinkedHashMap<E, Edge<E, V>> edges;
+    private final KeyFunction<V> keyFunction;
+    private final HashMap<Integer, MyVertex> verticesByKey;
+    private transient Collection<Edge<E, V>> edgesView;
+    private transient PathWorkspace workspace;
 
     /**
      * Cria um grafo
      */
     public DirectGraph() {
+        this((KeyFunction<V>) null);
+    }
+
+    /**
+     * Cria um grafo em que os vertices tambem sao indexados pela chave dos
+     * seus elementos, o que permite encontrar o vertice de um elemento igual a
+     * outro, mas que nao e o mesmo objeto, sem percorrer todos os vertices
+     *
+     * @param keyFunction funcao que devolve a chave de um elemento ou null
+     *                    para indexar os vertices so pelo elemento
+     */
+    public DirectGraph(KeyFunction<V> keyFunction) {
         vertices = new HashMap();
+        vertexList = new ArrayList<>();
+        edges = new LinkedHashMap<>();
+        this.keyFunction = keyFunction;
+        verticesByKey = new HashMap<>();
     }
 
 
@@ -21,8 +57,8 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      * @param list
      */
     public DirectGraph(HashMap<V, Vertex<V>> list) {
-        vertices = new HashMap<>();
-        vertices.putAll(list);
+        this();
+        setVertices(list);
     }
 
     /**
@@ -40,7 +76,20 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      * @param vertices
      */
     public void setVertices(HashMap<V, Vertex<V>> vertices) {
-        this.vertices.putAll(vertices);
+        vertices.forEach((element, vertex) -> {
+            Vertex<V> replaced = this.vertices.put(element, vertex);
+            if (replaced != vertex) {
+                if (replaced != null) {
+                    unindexVertex((MyVertex) replaced);
+                }
+                indexVertex((MyVertex) vertex);
+                notifyObservers(GraphEvent.ofVertex(GraphEvent.Kind.VERTEX_INSERTED, vertex));
+            }
+        });
+        vertices.values().forEach(vertex -> ((MyVertex) vertex).getOutbound().values().forEach(edge -> {
+            edges.put(edge.element(), edge);
+            notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_INSERTED, edge, edge.element()));
+        }));
     }
 
     /**
@@ -48,7 +97,10 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      */
     public void clear() {
         vertices.clear();
-
+        vertexList.clear();
+        verticesByKey.clear();
+        edges.clear();
+        notifyObservers(GraphEvent.cleared());
     }
 
     /**
@@ -61,8 +113,7 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
     @Override
     public Collection<Edge<E, V>> incidentEdges(Vertex<V> inbound) throws InvalidVertexException {
         MyVertex v = checkVertice(inbound);
-        return v.getEdges().values().stream()
-                .filter(edge -> edge.vertices()[1] == inbound).collect(Collectors.toCollection(HashSet::new));
+        return new HashSet<>(v.getInbound().values());
     }
 
     /**
@@ -75,9 +126,7 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
     @Override
     public Collection<Edge<E, V>> outboundEdges(Vertex<V> outbound) throws InvalidVertexException {
         MyVertex v = checkVertice(outbound);
-        return v.getEdges().values().stream()
-                .filter(edge -> edge.vertices()[0] == outbound).collect(Collectors.toCollection(HashSet::new));
-
+        return new HashSet<>(v.getOutbound().values());
     }
 
     /**
@@ -91,12 +140,10 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      */
     @Override
     public boolean areAdjacent(Vertex<V> outbound, Vertex<V> inbound) throws InvalidVertexException {
-        checkVertice(outbound);
-        checkVertice(inbound);
+        MyVertex v1 = checkVertice(outbound);
+        MyVertex v2 = checkVertice(inbound);
 
-        return edges().stream().map(Edge::vertices)
-                .anyMatch(vertices -> ((vertices[0]) == outbound && vertices[1] == inbound)
-                        || ((vertices[0]) == inbound && vertices[1] == outbound));
+        return v1.isAdjacentTo(v2) || v2.isAdjacentTo(v1);
     }
 
 
@@ -116,11 +163,16 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
             throws InvalidVertexException, InvalidEdgeException {
         MyVertex v1 = checkVertice(inbound);
         MyVertex v2 = checkVertice(outbound);
+        if (edges.containsKey(edgeElement)) {
+            throw new InvalidEdgeException("EXISTING EDGE");
+        }
 
-        MyEdge aresta = new MyEdge(edgeElement, inbound, outbound);
+        MyEdge aresta = new MyEdge(edgeElement, v1, v2);
 
-        v1.addEdge(edgeElement, aresta);
-        v2.addEdge(edgeElement, aresta);
+        v1.addInbound(aresta);
+        v2.addOutbound(aresta);
+        edges.put(edgeElement, aresta);
+        notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_INSERTED, aresta, edgeElement));
 
         return aresta;
     }
@@ -146,6 +198,50 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
         return insertEdge(a, b, edgeElement);
     }
 
+    /**
+     * Insere varias arestas de uma so vez, pela ordem dos arrays. Ao contrario
+     * de insertEdge os vertices nao sao validados um a um: sao obtidos
+     * diretamente do map. Todas as arestas sao validadas antes de inserir a
+     * primeira, por isso se alguma for recusada o grafo nao e alterado e nao
+     * e enviado nenhum evento. Cada aresta inserida e enviada aos observers
+     *
+     * @param outboundElements elementos guardados nos vertices outbound
+     * @param inboundElements  elementos guardados nos vertices inbound
+     * @param edgeElements     elementos a guardar nas novas arestas; as
+     *                         posicoes com null sao ignoradas
+     * @throws InvalidVertexException se algum vertice nao existir no grafo
+     * @throws InvalidEdgeException   se ja existir uma aresta com algum dos
+     *                                elementos ou se algum elemento estiver
+     *                                repetido nos arrays
+     */
+    public void insertEdges(V[] outboundElements, V[] inboundElements, E[] edgeElements)
+            throws InvalidVertexException, InvalidEdgeException {
+        List<MyEdge> created = new ArrayList<>(edgeElements.length);
+        Set<E> batch = new HashSet<>();
+        for (int i = 0; i < edgeElements.length; i++) {
+            E edgeElement = edgeElements[i];
+            if (edgeElement == null) {
+                continue;
+            }
+            MyVertex outbound = vertexOf(outboundElements[i]);
+            MyVertex inbound = vertexOf(inboundElements[i]);
+            if (outbound == null || inbound == null) {
+                throw new InvalidVertexException("VERTEX DOESNT EXIST");
+            }
+            if (edges.containsKey(edgeElement) || !batch.add(edgeElement)) {
+                throw new InvalidEdgeException("EXISTING EDGE");
+            }
+            created.add(new MyEdge(edgeElement, inbound, outbound));
+        }
+
+        for (MyEdge aresta : created) {
+            edges.put(aresta.elemento, aresta);
+            aresta.inbound.addInbound(aresta);
+            aresta.outbound.addOutbound(aresta);
+            notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_INSERTED, aresta, aresta.elemento));
+        }
+    }
+
     /**
      * Retorna o numero de vertices existentes
      *
@@ -163,8 +259,7 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      */
     @Override
     public int numEdges() {
-
-        return edges().size();
+        return edges.size();
     }
 
     /**
@@ -178,17 +273,27 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
     }
 
     /**
-     * Retorna uma colecao das arestas existentes
+     * Retorna uma colecao das arestas existentes. A colecao nao pode ser
+     * modificada e reflete as arestas inseridas ou removidas posteriormente
      *
      * @return lista de arestas existentes
      */
     @Override
     public Collection<Edge<E, V>> edges() {
-        ArrayList<Edge<E, V>> list = new ArrayList<>();
-
-        this.vertices.values().stream().map(this::incidentEdges).forEach(list::addAll);
+        if (edgesView == null) {
+            edgesView = Collections.unmodifiableCollection(edges.values());
+        }
+        return edgesView;
+    }
 
-        return list;
+    /**
+     * Retorna a aresta que guarda um elemento
+     *
+     * @param edgeElement elemento guardado na aresta
+     * @return a aresta ou null se nenhuma aresta guardar o elemento
+     */
+    public Edge<E, V> getEdge(E edgeElement) {
+        return edges.get(edgeElement);
     }
 
     /**
@@ -220,15 +325,20 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      *
      * @param vElement elemento do vertice que queremos criar
      * @return o vertice criado e adicionado a lista de vertices
-     * @throws InvalidVertexException se o vertice ja existir
+     * @throws InvalidVertexException se o vertice ja existir ou, num grafo
+     *                                com funcao de chave, se ja existir um
+     *                                vertice com a mesma chave
      */
     @Override
     public Vertex<V> insertVertex(V vElement) throws InvalidVertexException {
-        if (vertices.containsKey(vElement)) {
+        if (vertices.containsKey(vElement)
+                || (keyFunction != null && verticesByKey.containsKey(keyFunction.keyOf(vElement)))) {
             throw new InvalidVertexException("EXISTING VERTEX");
         }
         MyVertex vertice = new MyVertex(vElement);
         vertices.put(vElement, vertice);
+        indexVertex(vertice);
+        notifyObservers(GraphEvent.ofVertex(GraphEvent.Kind.VERTEX_INSERTED, vertice));
         return vertice;
     }
 
@@ -242,14 +352,21 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
     @Override
     public V removeVertex(Vertex<V> v) throws InvalidVertexException {
         MyVertex vertice = checkVertice(v);
-        HashSet<Vertex<V>> listVerticesOpostos = vertice.getEdges().values()
-                .stream().map(edge -> this.opposite(v, edge)).collect(Collectors.toCollection(HashSet::new));
 
-        listVerticesOpostos.stream().map(this::checkVertice).forEach(v1 -> {
-            vertice.getEdges().values().forEach(v1::removeEdge);
+        vertice.getOutbound().values().forEach(edge -> {
+            edge.inbound.removeInbound(edge);
+            edges.remove(edge.element());
+            notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_REMOVED, edge, edge.element()));
+        });
+        vertice.getInbound().values().forEach(edge -> {
+            edge.outbound.removeOutbound(edge);
+            edges.remove(edge.element());
+            notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_REMOVED, edge, edge.element()));
         });
 
         vertices.remove(v.element());
+        unindexVertex(vertice);
+        notifyObservers(GraphEvent.ofVertex(GraphEvent.Kind.VERTEX_REMOVED, vertice));
         return v.element();
     }
 
@@ -262,9 +379,12 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      */
     @Override
     public E removeEdge(Edge<E, V> e) throws InvalidEdgeException {
-        checkEdge(e);
+        MyEdge edge = checkEdge(e);
 
-        vertices.values().stream().map(vertex -> (MyVertex) vertex).forEach(v -> v.removeEdge(e));
+        edge.outbound.removeOutbound(edge);
+        edge.inbound.removeInbound(edge);
+        edges.remove(edge.element());
+        notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_REMOVED, edge, edge.element()));
 
         return e.element();
     }
@@ -276,13 +396,27 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      * @param newElement novo elemento que queremos atribuir a um vertice
      * @return o novo elemento associado ao vertice
      * @throws InvalidVertexException se o vertice for invalido ou nao existir
+     *                                ou se outro vertice ja tiver a chave do
+     *                                novo elemento
      */
     @Override
     public V replace(Vertex<V> v, V newElement) throws InvalidVertexException {
-        Vertex<V> vRemoved = vertices.remove(v.element());
-        V elem = vRemoved.element();
-        ((MyVertex) vRemoved).elemento = newElement;
-        vertices.put(newElement, vRemoved);
+        MyVertex vertice = checkVertice(v);
+        if (keyFunction != null) {
+            MyVertex existing = verticesByKey.get(keyFunction.keyOf(newElement));
+            if (existing != null && existing != vertice) {
+                throw new InvalidVertexException("EXISTING VERTEX");
+            }
+        }
+
+        V elem = vertice.elemento;
+        vertices.remove(elem);
+        if (keyFunction != null) {
+            verticesByKey.remove(keyFunction.keyOf(elem), vertice);
+            verticesByKey.put(keyFunction.keyOf(newElement), vertice);
+        }
+        vertice.elemento = newElement;
+        vertices.put(newElement, vertice);
         return elem;
 
     }
@@ -294,24 +428,36 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      * @param newElement novo elemento que queremos atribuir a uma aresta
      * @return o novo elemento associado a aresta
      * @throws InvalidEdgeException se a aresta nao existir ou for invalida
+     *                              ou se ja existir uma aresta com o novo elemento
      */
     @Override
     public E replace(Edge<E, V> e, E newElement) throws InvalidEdgeException {
-        MyVertex v1 = checkVertice(e.vertices()[0]);
-        MyVertex v2 = checkVertice(e.vertices()[1]);
-
-        E elem = v1.replaceEdge(newElement, e);
-        v2.replaceEdge(newElement, e);
+        MyEdge edge = checkEdge(e);
+        MyVertex v1 = edge.outbound;
+        MyVertex v2 = edge.inbound;
+        if (edges.containsKey(newElement)) {
+            throw new InvalidEdgeException("EXISTING EDGE");
+        }
 
-        replace(v1, v1.element());
-        replace(v2, v2.element());
+        E elem = edge.element();
+        v1.removeOutbound(edge);
+        v2.removeInbound(edge);
+        edges.remove(elem);
+        notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_REMOVED, edge, elem));
+        edge.elemento = newElement;
+        v1.addOutbound(edge);
+        v2.addInbound(edge);
+        edges.put(newElement, edge);
+        notifyObservers(GraphEvent.ofEdge(GraphEvent.Kind.EDGE_INSERTED, edge, newElement));
 
         return elem;
 
     }
 
     /**
-     * Verifica se um vertice é valido
+     * Verifica se um vertice é valido. O vertice pertence ao grafo se for o
+     * vertice guardado no map para o seu elemento, o que evita percorrer todos
+     * os vertices do map
      *
      * @param vertice vertice que pretendemos validar
      * @return o vertice validado ou caso este seja null ou nao exista
@@ -320,14 +466,26 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
         if (vertice == null) {
             throw new InvalidVertexException("NULL VERTEX");
         }
-        if (!this.vertices.containsValue(vertice)) {
+        if (this.vertices.get(vertice.element()) != vertice) {
             throw new InvalidVertexException("VERTEX DOESNT EXIST");
         }
         return (MyVertex) vertice;
     }
 
     /**
-     * Verifica se uma aresta é valida
+     * Retorna o vertice guardado no map para um elemento
+     *
+     * @param element elemento do vertice
+     * @return o vertice ou null se o elemento nao estiver no grafo
+     */
+    @SuppressWarnings("unchecked")
+    private MyVertex vertexOf(V element) {
+        return (MyVertex) vertices.get(element);
+    }
+
+    /**
+     * Verifica se uma aresta é valida. A aresta pertence ao grafo se o seu
+     * vertice outbound for valido e a tiver guardada para o seu elemento
      *
      * @param edge aresta que pretendemos validar
      * @return a aresta validada ou caso seja null ou nao exista
@@ -336,15 +494,18 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
         if (edge == null) {
             throw new InvalidEdgeException("NULL EDGE");
         }
+        if (!(edge instanceof DirectGraph.MyEdge)) {
+            throw new InvalidEdgeException("EDGE DOESNT EXIST");
+        }
 
-        MyVertex v1 = checkVertice(edge.vertices()[0]);
-        MyVertex v2 = checkVertice(edge.vertices()[1]);
+        MyEdge myEdge = (MyEdge) edge;
+        MyVertex v1 = checkVertice(myEdge.outbound);
 
-        if (!v1.getEdges().containsValue(edge) && !v2.getEdges().containsValue(edge)) {
+        if (v1.getOutbound().get(myEdge.elemento) != edge) {
             throw new InvalidEdgeException("EDGE DOESNT EXIST");
         }
 
-        return (MyEdge) edge;
+        return myEdge;
     }
 
     /**
@@ -354,86 +515,243 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      * @return true se o vertice estiver na lista ou false se nao estiver
      */
     public boolean containVertice(V vElement) {
-        return this.vertices.keySet().stream().anyMatch(user -> ((User) user).getID() == ((User) vElement).getID());
+        return findVertex(vElement) != null;
     }
 
     /**
-     * Retorna a lista de vertices na pesquisa em largura
+     * Retorna o vertice de um elemento. Se o grafo tiver uma funcao de chave
+     * e retornado o vertice cujo elemento tem a mesma chave, se nao o vertice
+     * do proprio elemento
      *
-     * @param v representa o vertice de inicio da pesquisa em largura
-     * @return lista de vertice atraves da pesquisa em largura
+     * @param vElement elemento que pretendemos procurar
+     * @return o vertice ou null se nao existir
      */
-    private ArrayList<Vertex<V>> BFS(Vertex<V> v) {
-        ArrayList<Vertex<V>> path = new ArrayList<>();
-        Set<Vertex<V>> visited = new HashSet<>();
-        Queue<Vertex<V>> queue = new LinkedList<>();
-        visited.add(v);
-        queue.add(v);
-        while (!queue.isEmpty()) {
-            Vertex<V> vLook = queue.remove();
-            path.add(vLook);
-            outboundEdges(vLook).stream().filter(edge -> !visited.contains(edge.vertices()[1])).forEach(edge -> {
-                visited.add(edge.vertices()[1]);
-                queue.add(edge.vertices()[1]);
-            });
+    public Vertex<V> findVertex(V vElement) {
+        if (vElement == null) {
+            return null;
         }
-        return path;
+        if (keyFunction == null) {
+            return vertices.get(vElement);
+        }
+        return verticesByKey.get(keyFunction.keyOf(vElement));
     }
 
     /**
-     * Procura o caminho de menor valor entre dois vertices
+     * Verifica se existe uma aresta de um vertice para outro
      *
-     * @param origin    representa o vertice de origem
-     * @param parents   representa os vertices que tem uma determinada distancia
-     *                  do vertice de origem
-     * @param distances representa a distance a que cada vertice se deve
-     *                  encontrar o vertice de origem
+     * @param outbound vertice outbound
+     * @param inbound  vertice inbound
+     * @return true se existir pelo menos uma aresta de outbound para inbound
+     * @throws InvalidVertexException se um ou ambos os vertices forem invalidos
      */
-    private void dijkstra(Vertex<V> origin, HashMap<Vertex<V>, Vertex<V>> parents, HashMap<Vertex<V>, Integer> distances) {
-        HashSet<Vertex<V>> unvisited = new HashSet<>(BFS(origin));
-        unvisited.forEach(v -> {
-            distances.put(v, Integer.MAX_VALUE);
-            parents.put(v, null);
-        });
-        distances.put(origin, 0);
-        while (!unvisited.isEmpty()) {
-            Vertex<V> lowestCostVertex = minimumCost(unvisited, distances);
-            unvisited.remove(lowestCostVertex);
-            outboundEdges(lowestCostVertex).stream()
-                    .map(edge -> edge.vertices()[1]).filter(unvisited::contains).forEach(oppositeVertex -> {
-                int distanceBetweenVertex = 1 + distances.get(lowestCostVertex);
-                if (distances.get(oppositeVertex) > distanceBetweenVertex) {
-                    distances.put(oppositeVertex, distanceBetweenVertex);
-                    parents.put(oppositeVertex, lowestCostVertex);
-                }
-            });
+    public boolean containsEdge(Vertex<V> outbound, Vertex<V> inbound) throws InvalidVertexException {
+        MyVertex v1 = checkVertice(outbound);
+        MyVertex v2 = checkVertice(inbound);
+        return v1.isAdjacentTo(v2);
+    }
+
+    /**
+     * Atribui ao vertice a proxima posicao livre da lista de vertices, usada
+     * para indexar os arrays das pesquisas de caminhos, e guarda-o pela chave
+     * do seu elemento
+     *
+     * @param vertice vertice a indexar
+     */
+    private void indexVertex(MyVertex vertice) {
+        vertice.index = vertexList.size();
+        vertexList.add(vertice);
+        if (keyFunction != null) {
+            verticesByKey.put(keyFunction.keyOf(vertice.elemento), vertice);
         }
+    }
 
+    /**
+     * Retira o vertice da lista de vertices, passando o ultimo vertice da lista
+     * para a sua posicao, e do map das chaves
+     *
+     * @param vertice vertice a retirar
+     */
+    private void unindexVertex(MyVertex vertice) {
+        if (keyFunction != null) {
+            verticesByKey.remove(keyFunction.keyOf(vertice.elemento), vertice);
+        }
+        MyVertex last = vertexList.remove(vertexList.size() - 1);
+        if (last != vertice) {
+            last.index = vertice.index;
+            vertexList.set(vertice.index, last);
+        }
+    }
+
+    /**
+     * Retorna os arrays de trabalho das pesquisas de caminhos, com capacidade
+     * para todos os vertices do grafo. Os arrays sao reutilizados entre
+     * pesquisas, pelo que estas nao sao thread-safe
+     *
+     * @return os arrays de trabalho das pesquisas de caminhos
+     */
+    private PathWorkspace workspace() {
+        if (workspace == null) {
+            workspace = new PathWorkspace();
+        }
+        workspace.ensureCapacity(vertexList.size());
+        return workspace;
     }
 
     /**
-     * Permite calcular o custo mais baixo
+     * Pesquisa em largura a partir do vertice de origem ate ser encontrado o
+     * vertice de destino. Como todas as arestas tem custo 1, a distancia de
+     * cada vertice visitado e a do caminho mais curto, tal como no algoritmo
+     * de Dijkstra
      *
-     * @param unvisited representa os vertices ainda nao visitados
-     * @param distances representa a distancia a que cada vertice esta do
-     *                  vertice de origem
-     * @return o custo mais baixo nos vertices nao visitados
+     * @param origin representa o vertice de origem
+     * @param end    representa o vertice de destino
+     * @param ws     arrays de trabalho onde ficam as distancias e os pais
+     * @return true se o vertice de destino for alcancado
      */
-    private Vertex<V> minimumCost(Set<Vertex<V>> unvisited, HashMap<Vertex<V>, Integer> distances) {
-        int min = Integer.MAX_VALUE;
-        Vertex<V> minCostVertex = null;
-        for (Vertex<V> v : unvisited) {
-            if (distances.get(v) <= min) {
-                minCostVertex = v;
-                min = distances.get(v);
+    private boolean shortestPathSearch(MyVertex origin, MyVertex end, PathWorkspace ws) {
+        int stamp = ws.nextStamp();
+        int head = 0;
+        int tail = 0;
+        ws.visited[origin.index] = stamp;
+        ws.distance[origin.index] = 0;
+        ws.parent[origin.index] = -1;
+        ws.queue[tail++] = origin.index;
+
+        while (head < tail) {
+            int u = ws.queue[head++];
+            if (u == end.index) {
+                return true;
+            }
+            for (MyEdge edge : vertexList.get(u).getOutbound().values()) {
+                int w = edge.inbound.index;
+                if (ws.visited[w] != stamp) {
+                    ws.visited[w] = stamp;
+                    ws.distance[w] = ws.distance[u] + 1;
+                    ws.parent[w] = u;
+                    ws.queue[tail++] = w;
+                }
             }
         }
-        return minCostVertex;
+        return false;
+    }
+
+    /**
+     * Pesquisa em largura bidirecional: avanca a partir da origem pelas arestas
+     * outbound e a partir do destino pelas arestas inbound, expandindo um nivel
+     * completo da fronteira mais pequena de cada vez, e para quando as duas
+     * pesquisas se encontram
+     *
+     * @param origin representa o vertice de origem
+     * @param end    representa o vertice de destino
+     * @param ws     arrays de trabalho onde ficam as distancias, os pais na
+     *               pesquisa a partir da origem e os sucessores na pesquisa a
+     *               partir do destino
+     * @return a posicao do vertice onde as pesquisas se encontram no caminho
+     * mais curto ou -1 se nao existir caminho
+     */
+    private int bidirectionalSearch(MyVertex origin, MyVertex end, PathWorkspace ws) {
+        int stamp = ws.nextStamp();
+        ws.visited[origin.index] = stamp;
+        ws.distance[origin.index] = 0;
+        ws.parent[origin.index] = -1;
+        ws.queue[0] = origin.index;
+        ws.visitedBack[end.index] = stamp;
+        ws.distanceBack[end.index] = 0;
+        ws.next[end.index] = -1;
+        ws.queueBack[0] = end.index;
+        if (origin == end) {
+            return origin.index;
+        }
+
+        int head = 0, tail = 1, headBack = 0, tailBack = 1;
+        int best = Integer.MAX_VALUE;
+        int meet = -1;
+
+        while (meet < 0 && head < tail && headBack < tailBack) {
+            if (tail - head <= tailBack - headBack) {
+                int levelEnd = tail;
+                while (head < levelEnd) {
+                    int u = ws.queue[head++];
+                    for (MyEdge edge : vertexList.get(u).getOutbound().values()) {
+                        int w = edge.inbound.index;
+                        if (ws.visited[w] != stamp) {
+                            ws.visited[w] = stamp;
+                            ws.distance[w] = ws.distance[u] + 1;
+                            ws.parent[w] = u;
+                            ws.queue[tail++] = w;
+                            if (ws.visitedBack[w] == stamp && ws.distance[w] + ws.distanceBack[w] < best) {
+                                best = ws.distance[w] + ws.distanceBack[w];
+                                meet = w;
+                            }
+                        }
+                    }
+                }
+            } else {
+                int levelEnd = tailBack;
+                while (headBack < levelEnd) {
+                    int u = ws.queueBack[headBack++];
+                    for (MyEdge edge : vertexList.get(u).getInbound().values()) {
+                        int w = edge.outbound.index;
+                        if (ws.visitedBack[w] != stamp) {
+                            ws.visitedBack[w] = stamp;
+                            ws.distanceBack[w] = ws.distanceBack[u] + 1;
+                            ws.next[w] = u;
+                            ws.queueBack[tailBack++] = w;
+                            if (ws.visited[w] == stamp && ws.distance[w] + ws.distanceBack[w] < best) {
+                                best = ws.distance[w] + ws.distanceBack[w];
+                                meet = w;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * Permite obter a lista de vertices que se encontram no caminho mais curto
+     * entre o vertice de origem e o destino, atraves de uma pesquisa em
+     * largura bidirecional ou apenas a partir da origem. O caminho inclui o
+     * vertice de destino mas nao o de origem
+     *
+     * @param origin        representa o vertice a partir do qual queremos
+     *                      calcular a distancia ate um determinado vertice
+     * @param end           representa o vertice que queremos chegar a partir do
+     *                      vertice de origem
+     * @param path          representa a lista que contem o caminho mais curto
+     *                      entre os dois vertices
+     * @param bidirectional true para pesquisar tambem a partir do destino
+     * @return o custo do caminho mais curto entre dois vertices ou -1 se nao
+     * existir caminho
+     */
+    public int minCostPath(Vertex<V> origin, Vertex<V> end, ArrayList<V> path, boolean bidirectional) {
+        if (!bidirectional) {
+            return minCostPath(origin, end, path);
+        }
+        MyVertex source = checkVertice(origin);
+        MyVertex target = checkVertice(end);
+        path.clear();
+
+        PathWorkspace ws = workspace();
+        int meet = bidirectionalSearch(source, target, ws);
+        if (meet < 0) {
+            return -1;
+        }
+        for (int v = meet; v != source.index; v = ws.parent[v]) {
+            path.add(vertexList.get(v).element());
+        }
+        Collections.reverse(path);
+        for (int v = ws.next[meet]; v >= 0; v = ws.next[v]) {
+            path.add(vertexList.get(v).element());
+        }
+        return ws.distance[meet] + ws.distanceBack[meet];
     }
 
     /**
      * Permite obter a lista de vertices que se encontram no caminho mais curto
-     * entre o vertice de origem e o destino
+     * entre o vertice de origem e o destino. O caminho inclui o vertice de
+     * destino mas nao o de origem
      *
      * @param origin representa o vertice a partir do qual queremos calcular a
      *               distancia ate um determinado vertice
@@ -441,21 +759,195 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      *               de origem
      * @param path   representa a lista que contem o caminho mais curto entre os
      *               dois vertices
-     * @return o caminho mais curto entre dois vertices
+     * @return o custo do caminho mais curto entre dois vertices ou -1 se nao
+     * existir caminho
      */
     public int minCostPath(Vertex<V> origin, Vertex<V> end, ArrayList<V> path) {
-        HashMap<Vertex<V>, Vertex<V>> parents = new HashMap<>();
-        HashMap<Vertex<V>, Integer> distances = new HashMap<>();
+        MyVertex source = checkVertice(origin);
+        MyVertex target = checkVertice(end);
         path.clear();
-        dijkstra(origin, parents, distances);
-        int cost = distances.get(end);
-        Vertex<V> v = end;
-        System.out.println("Parents: " + parents + "\nDistances: " + distances);
-        do {
-            path.add(0, v.element());
-            v = parents.get(v);
-        } while (!v.element().equals(origin.element()));
-        return cost;
+
+        PathWorkspace ws = workspace();
+        if (!shortestPathSearch(source, target, ws)) {
+            return -1;
+        }
+        for (int v = target.index; v != source.index; v = ws.parent[v]) {
+            path.add(vertexList.get(v).element());
+        }
+        Collections.reverse(path);
+        return ws.distance[target.index];
+    }
+
+    /**
+     * Calcula a distancia entre todos os pares de vertices, com uma pesquisa em
+     * largura por vertice de origem executada em paralelo, e guarda-as numa
+     * matriz
+     *
+     * @return as distancias entre todos os pares de vertices, com a matriz
+     * @throws IllegalStateException se o grafo tiver demasiados vertices para
+     *                               guardar a matriz
+     */
+    public HopDistances<V> hopDistanceMatrix() {
+        long size = vertexList.size();
+        if (size * size > MAX_MATRIX_ENTRIES) {
+            throw new IllegalStateException("GRAPH TOO LARGE FOR MATRIX");
+        }
+        return allPairsHopDistances(true);
+    }
+
+    /**
+     * Calcula o histograma das distancias entre todos os pares de vertices,
+     * com uma pesquisa em largura por vertice de origem executada em paralelo,
+     * sem guardar a matriz das distancias
+     *
+     * @return as distancias entre todos os pares de vertices, sem a matriz
+     */
+    public HopDistances<V> hopDistanceHistogram() {
+        return allPairsHopDistances(false);
+    }
+
+    /**
+     * Copia a adjacencia do grafo para arrays indexados pela posicao de cada
+     * vertice e executa as pesquisas em largura no ForkJoinPool comum
+     *
+     * @param storeMatrix true para guardar a matriz das distancias
+     * @return as distancias entre todos os pares de vertices
+     */
+    private HopDistances<V> allPairsHopDistances(boolean storeMatrix) {
+        int n = vertexList.size();
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + vertexList.get(i).getOutbound().size();
+        }
+        int[] targets = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (MyEdge edge : vertexList.get(i).getOutbound().values()) {
+                targets[k++] = edge.inbound.index;
+            }
+        }
+
+        short[] matrix = storeMatrix ? new short[n * n] : null;
+        long[] histogram = ForkJoinPool.commonPool().invoke(new AllPairsTask(offsets, targets, matrix, 0, n));
+        return new HopDistances<>(new ArrayList<Vertex<V>>(vertexList), histogram, matrix);
+    }
+
+    /**
+     * Tarefa que executa as pesquisas em largura de um intervalo de vertices
+     * de origem, dividindo-o enquanto tiver mais de SOURCES_PER_TASK vertices,
+     * e devolve o histograma das distancias encontradas
+     */
+    private static class AllPairsTask extends RecursiveTask<long[]> {
+
+        private final int[] offsets;
+        private final int[] targets;
+        private final short[] matrix;
+        private final int from;
+        private final int to;
+
+        private AllPairsTask(int[] offsets, int[] targets, short[] matrix, int from, int to) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.matrix = matrix;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from > SOURCES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                AllPairsTask left = new AllPairsTask(offsets, targets, matrix, from, middle);
+                left.fork();
+                long[] right = new AllPairsTask(offsets, targets, matrix, middle, to).compute();
+                return merge(left.join(), right);
+            }
+
+            int n = offsets.length - 1;
+            int[] distance = new int[n];
+            int[] queue = new int[n];
+            long[] histogram = new long[1];
+            for (int source = from; source < to; source++) {
+                Arrays.fill(distance, -1);
+                if (matrix != null) {
+                    Arrays.fill(matrix, source * n, source * n + n, HopDistances.UNREACHABLE);
+                    matrix[source * n + source] = 0;
+                }
+                distance[source] = 0;
+                queue[0] = source;
+                int head = 0;
+                int tail = 1;
+                while (head < tail) {
+                    int u = queue[head++];
+                    for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                        int w = targets[k];
+                        if (distance[w] < 0) {
+                            distance[w] = distance[u] + 1;
+                            queue[tail++] = w;
+                            if (distance[w] >= histogram.length) {
+                                histogram = Arrays.copyOf(histogram, distance[w] + 1);
+                            }
+                            histogram[distance[w]]++;
+                            if (matrix != null) {
+                                matrix[source * n + w] = (short) distance[w];
+                            }
+                        }
+                    }
+                }
+            }
+            return histogram;
+        }
+
+        private static long[] merge(long[] h1, long[] h2) {
+            long[] result = Arrays.copyOf(h1, Math.max(h1.length, h2.length));
+            for (int i = 0; i < h2.length; i++) {
+                result[i] += h2[i];
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Classe auxiliar com os arrays, indexados pela posicao de cada vertice,
+     * usados nas pesquisas de caminhos. Em vez de limpar os arrays de visitados
+     * em cada pesquisa, cada pesquisa usa uma nova marca. Os arrays terminados
+     * em Back sao os da pesquisa a partir do destino na pesquisa bidirecional
+     */
+    private static class PathWorkspace {
+
+        private int[] visited = new int[0];
+        private int[] distance = new int[0];
+        private int[] parent = new int[0];
+        private int[] queue = new int[0];
+        private int[] visitedBack = new int[0];
+        private int[] distanceBack = new int[0];
+        private int[] next = new int[0];
+        private int[] queueBack = new int[0];
+        private int stamp;
+
+        private void ensureCapacity(int capacity) {
+            if (visited.length < capacity) {
+                int length = Math.max(capacity, visited.length * 2);
+                visited = new int[length];
+                distance = new int[length];
+                parent = new int[length];
+                queue = new int[length];
+                visitedBack = new int[length];
+                distanceBack = new int[length];
+                next = new int[length];
+                queueBack = new int[length];
+                stamp = 0;
+            }
+        }
+
+        private int nextStamp() {
+            if (++stamp == 0) {
+                Arrays.fill(visited, 0);
+                Arrays.fill(visitedBack, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
     }
 
     /**
@@ -464,11 +956,11 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
      */
     private class MyEdge implements Edge<E, V>, Serializable {
 
-        private final Vertex<V> inbound;
-        private final Vertex<V> outbound;
+        private final MyVertex inbound;
+        private final MyVertex outbound;
         private E elemento;
 
-        public MyEdge(E elemento, Vertex<V> vertice1, Vertex<V> vertice2) {
+        public MyEdge(E elemento, MyVertex vertice1, MyVertex vertice2) {
             this.elemento = elemento;
             this.inbound = vertice1;
             this.outbound = vertice2;
@@ -499,45 +991,77 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
 
     /**
      * Classe auxiliar com as informacoes relativas a um vertice, nomeadamente,
-     * o elemento que cada vertice guarda
+     * o elemento que cada vertice guarda, as arestas que entram e saem do
+     * vertice e um indice dos vertices vizinhos para as arestas que os ligam
      */
     private class MyVertex implements Vertex<V>, Serializable {
 
-        private final HashMap<E, Edge<E, V>> edges;
+        private final HashMap<E, MyEdge> inbound;
+        private final HashMap<E, MyEdge> outbound;
+        private final HashMap<Vertex<V>, Set<Edge<E, V>>> adjacent;
         private V elemento;
+        private int index;
 
         public MyVertex(V elemento) {
             this.elemento = elemento;
-            this.edges = new HashMap<>();
+            this.inbound = new HashMap<>();
+            this.outbound = new HashMap<>();
+            this.adjacent = new HashMap<>();
         }
 
-        public HashMap<E, Edge<E, V>> getEdges() {
-
-            return edges;
+        /**
+         * Retorna as arestas que entram no vertice
+         *
+         * @return map das arestas inbound indexadas pelo seu elemento
+         */
+        public HashMap<E, MyEdge> getInbound() {
+            return inbound;
         }
 
-        public Edge<E, V> addEdge(E element, Edge<E, V> edge) {
-            return edges.put(element, edge);
+        /**
+         * Retorna as arestas que saem do vertice
+         *
+         * @return map das arestas outbound indexadas pelo seu elemento
+         */
+        public HashMap<E, MyEdge> getOutbound() {
+            return outbound;
         }
 
-        public void removeEdge(Edge<E, V> e) {
+        /**
+         * Verifica se existe alguma aresta deste vertice para o vertice fornecido
+         *
+         * @param v vertice inbound
+         * @return true se existir uma aresta deste vertice para v
+         */
+        public boolean isAdjacentTo(Vertex<V> v) {
+            return adjacent.containsKey(v);
+        }
 
-            edges.remove(e.element());
+        public void addInbound(MyEdge edge) {
+            inbound.put(edge.element(), edge);
+        }
 
+        public void addOutbound(MyEdge edge) {
+            outbound.put(edge.element(), edge);
+            adjacent.computeIfAbsent(edge.inbound, v -> new HashSet<>()).add(edge);
         }
 
-        public E replaceEdge(E newElement, Edge<E, V> e) {
+        public void removeInbound(MyEdge edge) {
+            inbound.remove(edge.element(), edge);
+        }
 
-            Edge<E, V> eRemoved = edges.remove(e.element());
-            E elem = null;
-            if (eRemoved != null) {
-                elem = eRemoved.element();
-                ((MyEdge) eRemoved).elemento = newElement;
-                edges.put(newElement, eRemoved);
+        public void removeOutbound(MyEdge edge) {
+            if (outbound.remove(edge.element(), edge)) {
+                removeAdjacent(edge);
             }
+        }
 
-            return elem;
-
+        private void removeAdjacent(MyEdge edge) {
+            Vertex<V> v = edge.inbound;
+            Set<Edge<E, V>> edgesToV = adjacent.get(v);
+            if (edgesToV != null && edgesToV.remove(edge) && edgesToV.isEmpty()) {
+                adjacent.remove(v);
+            }
         }
 
         @Override
@@ -555,4 +1079,4 @@ public class DirectGraph<V, E> implements Digraph<V, E>, Serializable {
 
     }
 
-}
\ No newline at end of file
+}
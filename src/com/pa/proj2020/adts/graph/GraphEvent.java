@@ -0,0 +1,79 @@
+package com.pa.proj2020.adts.graph;
+
+/**
+ * Classe que representa uma alteracao a um {@link DirectGraph}, enviada aos
+ * observers do grafo
+ *
+ * @param <V> tipo do elemento guardado num vertice
+ * @param <E> tipo do elemento guardado numa aresta
+ */
+public class GraphEvent<V, E> {
+
+    /**
+     * Tipo de alteracao ao grafo
+     */
+    public enum Kind {
+        VERTEX_INSERTED, VERTEX_REMOVED, EDGE_INSERTED, EDGE_REMOVED, CLEARED
+    }
+
+    private final Kind kind;
+    private final Vertex<V> vertex;
+    private final Edge<E, V> edge;
+    private final E edgeElement;
+
+    private GraphEvent(Kind kind, Vertex<V> vertex, Edge<E, V> edge, E edgeElement) {
+        this.kind = kind;
+        this.vertex = vertex;
+        this.edge = edge;
+        this.edgeElement = edgeElement;
+    }
+
+    /**
+     * Cria uma alteracao relativa a um vertice
+     *
+     * @param kind   tipo de alteracao
+     * @param vertex vertice inserido ou removido
+     * @return a alteracao criada
+     */
+    static <V, E> GraphEvent<V, E> ofVertex(Kind kind, Vertex<V> vertex) {
+        return new GraphEvent<>(kind, vertex, null, null);
+    }
+
+    /**
+     * Cria uma alteracao relativa a uma aresta. O elemento e guardado a parte
+     * porque pode ser substituido depois da alteracao
+     *
+     * @param kind    tipo de alteracao
+     * @param edge    aresta inserida ou removida
+     * @param element elemento da aresta no momento da alteracao
+     * @return a alteracao criada
+     */
+    static <V, E> GraphEvent<V, E> ofEdge(Kind kind, Edge<E, V> edge, E element) {
+        return new GraphEvent<>(kind, null, edge, element);
+    }
+
+    /**
+     * Cria a alteracao que indica que o grafo foi esvaziado
+     *
+     * @return a alteracao criada
+     */
+    static <V, E> GraphEvent<V, E> cleared() {
+        return new GraphEvent<>(Kind.CLEARED, null, null, null);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Vertex<V> getVertex() {
+        return vertex;
+    }
+
+    public Edge<E, V> getEdge() {
+        return edge;
+    }
+
+    public E getEdgeElement() {
+        return edgeElement;
+    }
+}
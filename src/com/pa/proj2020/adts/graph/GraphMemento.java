@@ -0,0 +1,371 @@
+package com.pa.proj2020.adts.graph;
+
+import observer.Observer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classe que guarda um estado do grafo da social network para undo. Em vez de
+ * copiar o grafo, o memento observa o grafo enquanto e o mais recente e
+ * regista as operacoes feitas desde que foi criado (vertices e arestas
+ * inseridos e removidos e mudancas de tipo dos utilizadores); o undo aplica
+ * as operacoes inversas pela ordem contraria. De tempos a tempos o memento e
+ * um checkpoint com todos os vertices e arestas do grafo, usado quando as
+ * operacoes nao podem ser invertidas (grafo esvaziado ou substituido): o
+ * estado e reconstruido a partir do checkpoint anterior mais proximo,
+ * repetindo as operacoes registadas pelos mementos seguintes
+ */
+class GraphMemento implements Memento, Observer {
+
+    private enum Kind {
+        VERTEX_INSERTED, VERTEX_REMOVED, EDGE_INSERTED, EDGE_REMOVED, TYPE_CHANGED, CLEARED
+    }
+
+    /**
+     * Operacao feita sobre o grafo
+     */
+    private static final class Operation {
+        private final Kind kind;
+        private final User user;
+        private final User target;
+        private final Relationship relationship;
+        private final Type oldType;
+        private final Type newType;
+
+        private Operation(Kind kind, User user, User target, Relationship relationship, Type oldType, Type newType) {
+            this.kind = kind;
+            this.user = user;
+            this.target = target;
+            this.relationship = relationship;
+            this.oldType = oldType;
+            this.newType = newType;
+        }
+    }
+
+    private final WeakReference<GraphMemento> previous;
+    private final List<Operation> operations;
+    private User[] checkpointUsers;
+    private Type[] checkpointTypes;
+    private User[] checkpointSources;
+    private User[] checkpointTargets;
+    private Relationship[] checkpointRelationships;
+    private boolean invertible;
+    private boolean replayable;
+    private DirectGraph<User, Relationship> graph;
+    private byte[] state;
+
+    private GraphMemento(GraphMemento previous) {
+        this.previous = new WeakReference<>(previous);
+        this.operations = new ArrayList<>();
+        this.invertible = true;
+        this.replayable = true;
+    }
+
+    /**
+     * Cria um memento que so guarda as operacoes feitas a partir de agora
+     *
+     * @param previous memento anterior ou null
+     * @return o memento criado
+     */
+    static GraphMemento delta(GraphMemento previous) {
+        return new GraphMemento(previous);
+    }
+
+    /**
+     * Cria um memento com todos os vertices e arestas atuais do grafo
+     *
+     * @param graph    grafo a guardar
+     * @param previous memento anterior ou null
+     * @return o memento criado
+     */
+    static GraphMemento checkpoint(DirectGraph<User, Relationship> graph, GraphMemento previous) {
+        GraphMemento memento = new GraphMemento(previous);
+        int numVertices = graph.numVertices();
+        memento.checkpointUsers = new User[numVertices];
+        memento.checkpointTypes = new Type[numVertices];
+        int i = 0;
+        for (Vertex<User> userVertex : graph.vertices()) {
+            memento.checkpointUsers[i] = userVertex.element();
+            memento.checkpointTypes[i++] = userVertex.element().getType();
+        }
+        int numEdges = graph.numEdges();
+        memento.checkpointSources = new User[numEdges];
+        memento.checkpointTargets = new User[numEdges];
+        memento.checkpointRelationships = new Relationship[numEdges];
+        i = 0;
+        for (Edge<Relationship, User> edge : graph.edges()) {
+            memento.checkpointSources[i] = edge.vertices()[0].element();
+            memento.checkpointTargets[i] = edge.vertices()[1].element();
+            memento.checkpointRelationships[i++] = edge.element();
+        }
+        return memento;
+    }
+
+    /**
+     * Retorna o memento anterior, se ainda existir
+     *
+     * @return o memento anterior ou null
+     */
+    GraphMemento getPrevious() {
+        return previous.get();
+    }
+
+    private boolean isCheckpoint() {
+        return checkpointUsers != null;
+    }
+
+    /**
+     * Passa a registar as operacoes feitas sobre um grafo
+     *
+     * @param graph grafo observado
+     */
+    void startRecording(DirectGraph<User, Relationship> graph) {
+        stopRecording();
+        this.graph = graph;
+        this.state = null;
+        graph.addObservers(this);
+    }
+
+    /**
+     * Deixa de registar operacoes
+     */
+    void stopRecording() {
+        if (graph != null) {
+            graph.removeObservers(this);
+            graph = null;
+        }
+    }
+
+    /**
+     * Regista que o grafo observado foi substituido por outro; as operacoes ja
+     * registadas deixam de poder ser invertidas ou repetidas
+     *
+     * @param newGraph novo grafo observado
+     */
+    void graphReplaced(DirectGraph<User, Relationship> newGraph) {
+        invertible = false;
+        replayable = false;
+        startRecording(newGraph);
+    }
+
+    /**
+     * Regista a mudanca do tipo de um utilizador
+     *
+     * @param user    utilizador alterado
+     * @param oldType tipo anterior
+     * @param newType novo tipo
+     */
+    void typeChanged(User user, Type oldType, Type newType) {
+        operations.add(new Operation(Kind.TYPE_CHANGED, user, null, null, oldType, newType));
+        state = null;
+    }
+
+    /**
+     * Método que regista uma alteracao ao grafo observado
+     *
+     * @param obj alteracao ao grafo
+     */
+    @Override
+    public void update(Object obj) {
+        if (!(obj instanceof GraphEvent)) {
+            return;
+        }
+        GraphEvent<User, Relationship> event = (GraphEvent<User, Relationship>) obj;
+        switch (event.getKind()) {
+            case VERTEX_INSERTED:
+                operations.add(new Operation(Kind.VERTEX_INSERTED, event.getVertex().element(), null, null,
+                        null, null));
+                break;
+            case VERTEX_REMOVED:
+                operations.add(new Operation(Kind.VERTEX_REMOVED, event.getVertex().element(), null, null,
+                        null, null));
+                break;
+            case EDGE_INSERTED:
+            case EDGE_REMOVED:
+                Kind kind = event.getKind() == GraphEvent.Kind.EDGE_INSERTED ? Kind.EDGE_INSERTED : Kind.EDGE_REMOVED;
+                operations.add(new Operation(kind, event.getEdge().vertices()[0].element(),
+                        event.getEdge().vertices()[1].element(), event.getEdgeElement(), null, null));
+                break;
+            case CLEARED:
+                operations.add(new Operation(Kind.CLEARED, null, null, null, null, null));
+                invertible = false;
+                break;
+            default:
+                break;
+        }
+        state = null;
+    }
+
+    /**
+     * Repoe o grafo no estado em que estava quando o memento foi criado. Se o
+     * memento e o mais recente e as suas operacoes podem ser invertidas sao
+     * aplicadas as operacoes inversas; se nao o estado e reconstruido a partir
+     * do checkpoint anterior mais proximo
+     *
+     * @param graph  grafo a repor
+     * @param latest true se o memento e o mais recente, i.e., se registou todas
+     *               as operacoes feitas ao grafo desde que foi criado
+     * @throws NoMementoException se o estado nao puder ser reconstruido
+     */
+    void restore(DirectGraph<User, Relationship> graph, boolean latest) throws NoMementoException {
+        if (isCheckpoint()) {
+            restoreCheckpoint(graph);
+        } else if (latest && invertible) {
+            undo(graph);
+        } else {
+            List<GraphMemento> chain = new ArrayList<>();
+            GraphMemento memento = getPrevious();
+            while (memento != null && !memento.isCheckpoint()) {
+                chain.add(memento);
+                memento = memento.getPrevious();
+            }
+            if (memento == null || !memento.replayable || chain.stream().anyMatch(m -> !m.replayable)) {
+                throw new NoMementoException("Cannot restore this state.");
+            }
+            memento.restoreCheckpoint(graph);
+            memento.redo(graph);
+            Collections.reverse(chain);
+            chain.forEach(m -> m.redo(graph));
+        }
+    }
+
+    private void restoreCheckpoint(DirectGraph<User, Relationship> graph) {
+        graph.clear();
+        for (int i = 0; i < checkpointUsers.length; i++) {
+            checkpointUsers[i].setType(checkpointTypes[i]);
+            graph.insertVertex(checkpointUsers[i]);
+        }
+        for (int i = 0; i < checkpointRelationships.length; i++) {
+            graph.insertEdge(checkpointSources[i], checkpointTargets[i], checkpointRelationships[i]);
+        }
+    }
+
+    private void undo(DirectGraph<User, Relationship> graph) {
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            Operation operation = operations.get(i);
+            switch (operation.kind) {
+                case VERTEX_INSERTED:
+                    graph.removeVertex(graph.getVertices().get(operation.user));
+                    break;
+                case VERTEX_REMOVED:
+                    graph.insertVertex(operation.user);
+                    break;
+                case EDGE_INSERTED:
+                    graph.removeEdge(graph.getEdge(operation.relationship));
+                    break;
+                case EDGE_REMOVED:
+                    graph.insertEdge(operation.user, operation.target, operation.relationship);
+                    break;
+                case TYPE_CHANGED:
+                    operation.user.setType(operation.oldType);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void redo(DirectGraph<User, Relationship> graph) {
+        for (Operation operation : operations) {
+            switch (operation.kind) {
+                case VERTEX_INSERTED:
+                    graph.insertVertex(operation.user);
+                    break;
+                case VERTEX_REMOVED:
+                    graph.removeVertex(graph.getVertices().get(operation.user));
+                    break;
+                case EDGE_INSERTED:
+                    graph.insertEdge(operation.user, operation.target, operation.relationship);
+                    break;
+                case EDGE_REMOVED:
+                    graph.removeEdge(graph.getEdge(operation.relationship));
+                    break;
+                case TYPE_CHANGED:
+                    operation.user.setType(operation.newType);
+                    break;
+                case CLEARED:
+                    graph.clear();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Retorna uma representacao compacta do memento, com os ids dos
+     * utilizadores e dos interesses do checkpoint e das operacoes registadas.
+     * O seu tamanho e o custo do memento usado pelo {@link Caretaker}
+     *
+     * @return o memento codificado
+     */
+    @Override
+    public byte[] getState() {
+        if (state != null) {
+            return state;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(isCheckpoint());
+            if (isCheckpoint()) {
+                out.writeInt(checkpointUsers.length);
+                for (int i = 0; i < checkpointUsers.length; i++) {
+                    out.writeInt(checkpointUsers[i].getID());
+                    out.writeByte(checkpointTypes[i].ordinal());
+                }
+                out.writeInt(checkpointRelationships.length);
+                for (int i = 0; i < checkpointRelationships.length; i++) {
+                    out.writeInt(checkpointSources[i].getID());
+                    out.writeInt(checkpointTargets[i].getID());
+                    writeRelationship(out, checkpointRelationships[i]);
+                }
+            }
+            out.writeInt(operations.size());
+            for (Operation operation : operations) {
+                out.writeByte(operation.kind.ordinal());
+                if (operation.user != null) {
+                    out.writeInt(operation.user.getID());
+                }
+                if (operation.target != null) {
+                    out.writeInt(operation.target.getID());
+                    writeRelationship(out, operation.relationship);
+                }
+                if (operation.newType != null) {
+                    out.writeByte(operation.oldType.ordinal());
+                    out.writeByte(operation.newType.ordinal());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        byte[] result = bytes.toByteArray();
+        if (graph == null) {
+            state = result;
+        }
+        return result;
+    }
+
+    private static void writeRelationship(DataOutputStream out, Relationship relationship) throws IOException {
+        Collection<Interest> interests = Collections.emptyList();
+        if (relationship instanceof RelationshipShared) {
+            out.writeByte(1);
+            interests = ((RelationshipShared) relationship).getInterests();
+        } else if (relationship instanceof RelationshipIndirect) {
+            out.writeByte(2);
+            interests = ((RelationshipIndirect) relationship).getListOfInterests();
+        } else {
+            out.writeByte(0);
+        }
+        out.writeInt(interests.size());
+        for (Interest interest : interests) {
+            out.writeInt(interest.getId());
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package com.pa.proj2020.adts.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Classe responsável pelo formato binario de snapshot do grafo da social
+ * network. O ficheiro e composto por:
+ * <ul>
+ *     <li>cabecalho com o numero magico, a versao, os tamanhos e a posicao de cada seccao;</li>
+ *     <li>pool de strings (nomes dos utilizadores e dos interesses) em UTF-8;</li>
+ *     <li>tabela de interesses (id, nome, ids dos utilizadores);</li>
+ *     <li>tabela de utilizadores (id, nome, tipo, interesses);</li>
+ *     <li>adjacencias em CSR: offsets por utilizador e utilizador de destino de cada aresta;</li>
+ *     <li>relacionamentos de cada aresta: tipo e interesses.</li>
+ * </ul>
+ * O snapshot e escrito com NIO e aberto com um {@link MappedByteBuffer}:
+ * abrir so le o cabecalho e os limites de cada seccao, verificando que cabem
+ * no ficheiro, e os utilizadores, interesses e relacionamentos so sao criados
+ * quando sao pedidos. Cada linha e validada quando e lida, por isso um
+ * ficheiro corrompido so e detetado ao ler a linha corrompida, com uma
+ * {@link IOException}
+ */
+public class GraphSnapshot {
+
+    /**
+     * Numero magico no inicio do ficheiro ("SNGS")
+     */
+    public static final int MAGIC = 0x534E4753;
+
+    /**
+     * Versao do formato escrita por esta classe
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final byte SIMPLE = 0;
+    private static final byte SHARED = 1;
+    private static final byte INDIRECT = 2;
+
+    private final ByteBuffer buffer;
+    private final int numStrings;
+    private final int numInterests;
+    private final int numUsers;
+    private final int numEdges;
+    private final int strings;
+    private final int stringBytes;
+    private final int interests;
+    private final int interestUserOffsets;
+    private final int interestUsers;
+    private final int users;
+    private final int userInterestOffsets;
+    private final int userInterests;
+    private final int outOffsets;
+    private final int targets;
+    private final int kinds;
+    private final int payloadOffsets;
+    private final int payloads;
+    private final int stringTotal;
+    private final int interestUserTotal;
+    private final int userInterestTotal;
+    private final int payloadTotal;
+    private final Interest[] interestCache;
+    private final User[] userCache;
+
+    private GraphSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("NOT A GRAPH SNAPSHOT");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("UNSUPPORTED SNAPSHOT VERSION " + buffer.getInt(4));
+        }
+        numStrings = count(8);
+        numInterests = count(12);
+        numUsers = count(16);
+        numEdges = count(20);
+        strings = section(24);
+        interests = section(32);
+        users = section(40);
+        outOffsets = section(48);
+        kinds = section(56);
+
+        stringBytes = end(strings, 4L * (numStrings + 1L));
+        interestUserOffsets = end(interests, 8L * numInterests);
+        interestUsers = end(interestUserOffsets, 4L * (numInterests + 1L));
+        userInterestOffsets = end(users, 12L * numUsers);
+        userInterests = end(userInterestOffsets, 4L * (numUsers + 1L));
+        targets = end(outOffsets, 4L * (numUsers + 1L));
+        payloadOffsets = end(kinds, align(numEdges));
+        payloads = end(payloadOffsets, 4L * (numEdges + 1L));
+
+        stringTotal = checkRows(strings, numStrings, stringBytes, 1);
+        interestUserTotal = checkRows(interestUserOffsets, numInterests, interestUsers, 4);
+        userInterestTotal = checkRows(userInterestOffsets, numUsers, userInterests, 4);
+        payloadTotal = checkRows(payloadOffsets, numEdges, payloads, 4);
+        if (checkRows(outOffsets, numUsers, targets, 4) != numEdges) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+
+        interestCache = new Interest[numInterests];
+        userCache = new User[numUsers];
+    }
+
+    private int count(int position) throws IOException {
+        int value = buffer.getInt(position);
+        if (value < 0) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+        return value;
+    }
+
+    private int section(int position) throws IOException {
+        long value = buffer.getLong(position);
+        if (value < HEADER_SIZE || value > buffer.capacity() || value % 4 != 0) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+        return (int) value;
+    }
+
+    private int end(int start, long size) throws IOException {
+        if (start + size > buffer.capacity()) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+        return (int) (start + size);
+    }
+
+    /**
+     * Verifica que os offsets de uma seccao em CSR comecam em zero e que os
+     * valores que indicam cabem no ficheiro. So o primeiro e o ultimo offset
+     * sao lidos; os offsets de cada linha sao verificados por
+     * {@link #rowStart(int, int, int)} quando a linha e lida
+     *
+     * @return o numero de valores da seccao
+     */
+    private int checkRows(int offsets, int rows, int values, int valueSize) throws IOException {
+        int total = intAt(offsets, rows);
+        if (intAt(offsets, 0) != 0 || total < 0) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+        end(values, (long) valueSize * total);
+        return total;
+    }
+
+    /**
+     * Retorna o primeiro valor de uma linha de uma seccao em CSR, verificando
+     * que os offsets da linha sao validos
+     *
+     * @return a posicao do primeiro valor da linha
+     */
+    private int rowStart(int offsets, int row, int total) throws IOException {
+        int start = intAt(offsets, row);
+        if (start < 0 || start > intAt(offsets, row + 1) || intAt(offsets, row + 1) > total) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+        return start;
+    }
+
+    private static int checkValue(int value, int bound) throws IOException {
+        if (value < 0 || value >= bound) {
+            throw new IOException("CORRUPT SNAPSHOT");
+        }
+        return value;
+    }
+
+    private static long align(long size) {
+        return (size + 3) & ~3L;
+    }
+
+    /**
+     * Abre um snapshot, mapeando o ficheiro em memoria
+     *
+     * @param path caminho do ficheiro
+     * @return o snapshot aberto
+     * @throws IOException se o ficheiro nao puder ser lido ou nao for um snapshot valido
+     */
+    public static GraphSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("SNAPSHOT TOO LARGE");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GraphSnapshot(buffer);
+        }
+    }
+
+    public int numUsers() {
+        return numUsers;
+    }
+
+    public int numEdges() {
+        return numEdges;
+    }
+
+    public int numInterests() {
+        return numInterests;
+    }
+
+    private int intAt(int section, int index) {
+        return buffer.getInt(section + 4 * index);
+    }
+
+    private String string(int index) throws IOException {
+        int start = rowStart(strings, checkValue(index, numStrings), stringTotal);
+        byte[] bytes = new byte[intAt(strings, index + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(stringBytes + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retorna um interesse do snapshot, criando-o na primeira vez que e pedido
+     *
+     * @param row posicao do interesse na tabela de interesses
+     * @return o interesse
+     * @throws IOException se a linha do interesse nao for valida
+     */
+    public Interest getInterest(int row) throws IOException {
+        if (interestCache[checkValue(row, numInterests)] == null) {
+            int start = rowStart(interestUserOffsets, row, interestUserTotal);
+            int[] ids = new int[intAt(interestUserOffsets, row + 1) - start];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = intAt(interestUsers, start + i);
+            }
+            interestCache[row] = new Interest(intAt(interests, 2 * row), string(intAt(interests, 2 * row + 1)), ids);
+        }
+        return interestCache[row];
+    }
+
+    /**
+     * Retorna um utilizador do snapshot, criando-o na primeira vez que e pedido
+     *
+     * @param row posicao do utilizador na tabela de utilizadores
+     * @return o utilizador
+     * @throws IOException se a linha do utilizador nao for valida
+     */
+    public User getUser(int row) throws IOException {
+        if (userCache[checkValue(row, numUsers)] == null) {
+            if (intAt(users, 3 * row) <= 0) {
+                throw new IOException("CORRUPT SNAPSHOT");
+            }
+            User user = new User(string(intAt(users, 3 * row + 1)), intAt(users, 3 * row),
+                    Type.values()[checkValue(intAt(users, 3 * row + 2), Type.values().length)]);
+            int end = intAt(userInterestOffsets, row + 1);
+            for (int i = rowStart(userInterestOffsets, row, userInterestTotal); i < end; i++) {
+                user.addInterest(getInterest(intAt(userInterests, i)));
+            }
+            userCache[row] = user;
+        }
+        return userCache[row];
+    }
+
+    /**
+     * Retorna o numero de arestas que saem de um utilizador
+     *
+     * @param row posicao do utilizador na tabela de utilizadores
+     * @return o numero de arestas
+     * @throws IOException se a linha do utilizador nao for valida
+     */
+    public int outDegree(int row) throws IOException {
+        return intAt(outOffsets, row + 1) - firstEdge(row);
+    }
+
+    /**
+     * Retorna a primeira aresta de um utilizador; as arestas do utilizador sao
+     * as seguintes ate {@link #outDegree(int)}
+     *
+     * @param row posicao do utilizador na tabela de utilizadores
+     * @return o indice da primeira aresta do utilizador
+     * @throws IOException se a linha do utilizador nao for valida
+     */
+    public int firstEdge(int row) throws IOException {
+        return rowStart(outOffsets, checkValue(row, numUsers), numEdges);
+    }
+
+    /**
+     * Retorna o utilizador de destino de uma aresta
+     *
+     * @param edge indice da aresta
+     * @return a posicao do utilizador de destino na tabela de utilizadores
+     * @throws IOException se a aresta ou o seu destino nao forem validos
+     */
+    public int target(int edge) throws IOException {
+        return checkValue(intAt(targets, checkValue(edge, numEdges)), numUsers);
+    }
+
+    /**
+     * Cria o relacionamento de uma aresta
+     *
+     * @param edge indice da aresta
+     * @return o relacionamento
+     * @throws IOException se a aresta ou o seu relacionamento nao forem validos
+     */
+    public Relationship getRelationship(int edge) throws IOException {
+        List<Interest> list = new ArrayList<>();
+        int end = intAt(payloadOffsets, checkValue(edge, numEdges) + 1);
+        for (int i = rowStart(payloadOffsets, edge, payloadTotal); i < end; i++) {
+            list.add(getInterest(intAt(payloads, i)));
+        }
+        switch (buffer.get(kinds + edge)) {
+            case SIMPLE:
+                return new RelationshipSimple();
+            case SHARED:
+                return new RelationshipShared(list);
+            case INDIRECT:
+                return new RelationshipIndirect(list);
+            default:
+                throw new IOException("CORRUPT SNAPSHOT");
+        }
+    }
+
+    /**
+     * Cria um grafo com todos os utilizadores e arestas do snapshot
+     *
+     * @return o grafo criado
+     * @throws IOException se alguma linha do snapshot nao for valida ou se o
+     *                     snapshot tiver utilizadores com o mesmo id
+     */
+    public DirectGraph<User, Relationship> toGraph() throws IOException {
+        DirectGraph<User, Relationship> graph = new DirectGraph<>(User::getID);
+        for (int row = 0; row < numUsers; row++) {
+            try {
+                graph.insertVertex(getUser(row));
+            } catch (InvalidVertexException e) {
+                throw new IOException("CORRUPT SNAPSHOT", e);
+            }
+        }
+        for (int row = 0; row < numUsers; row++) {
+            int end = firstEdge(row) + outDegree(row);
+            for (int edge = firstEdge(row); edge < end; edge++) {
+                graph.insertEdge(getUser(row), getUser(target(edge)), getRelationship(edge));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Escreve um snapshot de um grafo
+     *
+     * @param graph grafo a guardar
+     * @param path  caminho do ficheiro
+     * @throws IOException se o ficheiro nao puder ser escrito
+     */
+    public static void write(DirectGraph<User, Relationship> graph, Path path) throws IOException {
+        Map<Vertex<User>, Integer> userRows = new IdentityHashMap<>();
+        List<User> userList = new ArrayList<>();
+        graph.vertices().forEach(userVertex -> {
+            userRows.put(userVertex, userList.size());
+            userList.add(userVertex.element());
+        });
+
+        Map<String, Integer> stringRows = new HashMap<>();
+        List<byte[]> stringList = new ArrayList<>();
+        Map<Interest, Integer> interestRows = new IdentityHashMap<>();
+        List<Interest> interestList = new ArrayList<>();
+
+        int numEdges = graph.numEdges();
+        int[] outOffsets = new int[userList.size() + 1];
+        graph.edges().forEach(edge -> outOffsets[userRows.get(edge.vertices()[0]) + 1]++);
+        for (int row = 0; row < userList.size(); row++) {
+            outOffsets[row + 1] += outOffsets[row];
+        }
+        int[] next = Arrays.copyOf(outOffsets, userList.size());
+        int[] targets = new int[numEdges];
+        Relationship[] relationships = new Relationship[numEdges];
+        graph.edges().forEach(edge -> {
+            int position = next[userRows.get(edge.vertices()[0])]++;
+            targets[position] = userRows.get(edge.vertices()[1]);
+            relationships[position] = edge.element();
+        });
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.position(HEADER_SIZE);
+
+            int[] userNames = new int[userList.size()];
+            int[][] userInterests = new int[userList.size()][];
+            for (int row = 0; row < userList.size(); row++) {
+                userNames[row] = stringRow(userList.get(row).getName(), stringRows, stringList);
+                userInterests[row] = interestRows(userList.get(row).getInterests(), interestRows, interestList);
+            }
+            int[][] payloads = new int[numEdges][];
+            byte[] kinds = new byte[numEdges];
+            for (int edge = 0; edge < numEdges; edge++) {
+                Relationship relationship = relationships[edge];
+                if (relationship instanceof RelationshipShared) {
+                    kinds[edge] = SHARED;
+                    payloads[edge] = interestRows(((RelationshipShared) relationship).getInterests(),
+                            interestRows, interestList);
+                } else if (relationship instanceof RelationshipIndirect) {
+                    kinds[edge] = INDIRECT;
+                    payloads[edge] = interestRows(((RelationshipIndirect) relationship).getListOfInterests(),
+                            interestRows, interestList);
+                } else {
+                    kinds[edge] = SIMPLE;
+                    payloads[edge] = new int[0];
+                }
+            }
+            int[] interestNames = new int[interestList.size()];
+            for (int row = 0; row < interestList.size(); row++) {
+                interestNames[row] = stringRow(interestList.get(row).getName(), stringRows, stringList);
+            }
+
+            long strings = out.position();
+            int total = 0;
+            out.putInt(0);
+            for (byte[] bytes : stringList) {
+                total += bytes.length;
+                out.putInt(total);
+            }
+            for (byte[] bytes : stringList) {
+                out.putBytes(bytes);
+            }
+            out.align();
+
+            long interests = out.position();
+            for (int row = 0; row < interestList.size(); row++) {
+                out.putInt(interestList.get(row).getId());
+                out.putInt(interestNames[row]);
+            }
+            int[][] interestUsers = new int[interestList.size()][];
+            for (int row = 0; row < interestList.size(); row++) {
+                interestUsers[row] = interestList.get(row).getUserIds();
+            }
+            out.putRows(interestUsers);
+
+            long users = out.position();
+            for (int row = 0; row < userList.size(); row++) {
+                out.putInt(userList.get(row).getID());
+                out.putInt(userNames[row]);
+                out.putInt(userList.get(row).getType().ordinal());
+            }
+            out.putRows(userInterests);
+
+            long adjacency = out.position();
+            for (int offset : outOffsets) {
+                out.putInt(offset);
+            }
+            for (int target : targets) {
+                out.putInt(target);
+            }
+
+            long payloadKinds = out.position();
+            out.putBytes(kinds);
+            out.align();
+            out.putRows(payloads);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(stringList.size()).putInt(interestList.size())
+                    .putInt(userList.size()).putInt(numEdges).putLong(strings).putLong(interests)
+                    .putLong(users).putLong(adjacency).putLong(payloadKinds);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    private static int stringRow(String string, Map<String, Integer> rows, List<byte[]> list) {
+        return rows.computeIfAbsent(string, key -> {
+            list.add(key.getBytes(StandardCharsets.UTF_8));
+            return list.size() - 1;
+        });
+    }
+
+    private static int[] interestRows(Collection<Interest> collection, Map<Interest, Integer> rows,
+                                      List<Interest> list) {
+        int[] result = new int[collection.size()];
+        int i = 0;
+        for (Interest interest : collection) {
+            result[i++] = rows.computeIfAbsent(interest, key -> {
+                list.add(key);
+                return list.size() - 1;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Classe auxiliar que escreve valores num canal atraves de um buffer,
+     * guardando a posicao no ficheiro
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        private long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void position(long newPosition) throws IOException {
+            flush();
+            position = newPosition;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (byte value : bytes) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                buffer.put(value);
+            }
+        }
+
+        void align() throws IOException {
+            while (position() % 4 != 0) {
+                putBytes(new byte[1]);
+            }
+        }
+
+        /**
+         * Escreve linhas de inteiros em CSR: os offsets seguidos dos valores
+         */
+        void putRows(int[][] rows) throws IOException {
+            int total = 0;
+            putInt(0);
+            for (int[] row : rows) {
+                total += row.length;
+                putInt(total);
+            }
+            for (int[] row : rows) {
+                for (int value : row) {
+                    putInt(value);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
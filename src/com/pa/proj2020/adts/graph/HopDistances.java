@@ -0,0 +1,118 @@
+package com.pa.proj2020.adts.graph;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe com o resultado do calculo das distancias (numero de arestas) entre
+ * todos os pares de vertices de um grafo: o histograma das distancias e,
+ * quando o grafo e pequeno o suficiente, a matriz das distancias
+ *
+ * @param <V> tipo do elemento guardado num vertice
+ */
+public class HopDistances<V> {
+
+    /**
+     * Distancia guardada na matriz para os pares sem caminho
+     */
+    public static final short UNREACHABLE = -1;
+
+    private final List<Vertex<V>> vertices;
+    private final long[] histogram;
+    private final short[] matrix;
+
+    /**
+     * Cria o resultado do calculo das distancias
+     *
+     * @param vertices  vertices pela ordem das linhas e colunas da matriz
+     * @param histogram numero de pares de vertices distintos por distancia
+     * @param matrix    matriz das distancias guardada por linhas ou null
+     */
+    HopDistances(List<Vertex<V>> vertices, long[] histogram, short[] matrix) {
+        this.vertices = vertices;
+        this.histogram = histogram;
+        this.matrix = matrix;
+    }
+
+    /**
+     * Retorna os vertices pela ordem das linhas e colunas da matriz
+     *
+     * @return lista de vertices
+     */
+    public List<Vertex<V>> getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Retorna o histograma das distancias, em que a posicao i tem o numero de
+     * pares (origem, destino) distintos cujo caminho mais curto tem i arestas
+     *
+     * @return o histograma das distancias
+     */
+    public long[] getHistogram() {
+        return Arrays.copyOf(histogram, histogram.length);
+    }
+
+    /**
+     * Verifica se a matriz das distancias foi guardada
+     *
+     * @return true se a matriz foi guardada
+     */
+    public boolean hasMatrix() {
+        return matrix != null;
+    }
+
+    /**
+     * Retorna a distancia entre dois vertices
+     *
+     * @param from posicao do vertice de origem em {@link #getVertices()}
+     * @param to   posicao do vertice de destino em {@link #getVertices()}
+     * @return a distancia ou {@link #UNREACHABLE} se nao existir caminho
+     * @throws IllegalStateException se a matriz nao foi guardada
+     */
+    public short distance(int from, int to) {
+        if (matrix == null) {
+            throw new IllegalStateException("MATRIX NOT STORED");
+        }
+        return matrix[from * vertices.size() + to];
+    }
+
+    /**
+     * Retorna o numero de pares de vertices distintos ligados por um caminho
+     *
+     * @return o numero de pares com caminho
+     */
+    public long getReachablePairs() {
+        return Arrays.stream(histogram).sum();
+    }
+
+    /**
+     * Retorna o diametro do grafo, i.e., a maior distancia entre dois vertices
+     * ligados por um caminho
+     *
+     * @return o diametro do grafo
+     */
+    public int getDiameter() {
+        for (int i = histogram.length - 1; i > 0; i--) {
+            if (histogram[i] > 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Retorna a distancia media entre os pares de vertices ligados por um caminho
+     *
+     * @return a distancia media ou 0 se nao existirem caminhos
+     */
+    public double getAveragePathLength() {
+        long pairs = 0;
+        long total = 0;
+        for (int i = 1; i < histogram.length; i++) {
+            pairs += histogram[i];
+            total += i * histogram[i];
+        }
+        return pairs == 0 ? 0 : (double) total / pairs;
+    }
+}
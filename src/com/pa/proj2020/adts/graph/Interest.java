@@ -1,8 +1,9 @@
 package com.pa.proj2020.adts.graph;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Classe responsável pela gestão dos interesses associados a um utilizador
@@ -10,7 +11,7 @@ import java.util.List;
 public class Interest implements Serializable {
     private final int id;
     private final String name;
-    private final ArrayList<String> idsOfUsers;
+    private final int[] idsOfUsers;
 
     /**
      * Cria um Interest com o id e o nome
@@ -19,9 +20,7 @@ public class Interest implements Serializable {
      * @param name representa o nome de um interest
      */
     public Interest(int id, String name) {
-        this.id = id;
-        this.name = name;
-        this.idsOfUsers = new ArrayList<>();
+        this(id, name, new int[0]);
     }
 
     /**
@@ -32,8 +31,20 @@ public class Interest implements Serializable {
      * @param ids  representa a lista dos ids dos utilizadores com esse interest
      */
     public Interest(int id, String name, List<String> ids) {
-        this(id, name);
-        idsOfUsers.addAll(ids);
+        this(id, name, ids.stream().mapToInt(idUser -> Integer.parseInt(idUser.trim())).toArray());
+    }
+
+    /**
+     * Cria um Interest com o id, nome e os ids dos utilizadores com esse interest
+     *
+     * @param id   representa o id de um interest
+     * @param name representa o nome de um interest
+     * @param ids  representa os ids dos utilizadores com esse interest
+     */
+    public Interest(int id, String name, int[] ids) {
+        this.id = id;
+        this.name = name;
+        this.idsOfUsers = Arrays.copyOf(ids, ids.length);
     }
 
     /**
@@ -55,12 +66,22 @@ public class Interest implements Serializable {
     }
 
     /**
-     * Método que retorna uma lista com os ids dos utilizadores
+     * Método que retorna os ids dos utilizadores com este interest, sem os
+     * copiar
+     *
+     * @return um stream com os ids dos utilizadores
+     */
+    public IntStream userIds() {
+        return Arrays.stream(idsOfUsers);
+    }
+
+    /**
+     * Método que retorna os ids dos utilizadores com este interest
      *
-     * @return uma lista com os ids dos utilizadores
+     * @return uma copia dos ids dos utilizadores
      */
-    public ArrayList<String> getIdsOfUsers() {
-        return idsOfUsers;
+    public int[] getUserIds() {
+        return Arrays.copyOf(idsOfUsers, idsOfUsers.length);
     }
 
     /**
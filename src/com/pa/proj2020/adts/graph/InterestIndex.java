@@ -0,0 +1,129 @@
+package com.pa.proj2020.adts.graph;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Classe com o indice invertido dos interesses: para cada utilizador o
+ * conjunto dos ids dos seus interesses e para cada interesse o conjunto dos
+ * ids dos utilizadores que o tem, ambos guardados em {@link BitSet}. E
+ * construido uma vez a partir dos interesses carregados, evitando percorrer
+ * todos os interesses e comparar strings sempre que e criado um relacionamento
+ */
+public class InterestIndex implements Serializable {
+    private final HashMap<Integer, Interest> interests;
+    private final HashMap<Integer, BitSet> interestsByUser;
+    private final HashMap<Integer, BitSet> usersByInterest;
+
+    /**
+     * Cria o indice a partir dos interesses e dos ids dos seus utilizadores
+     *
+     * @param interests colecao de interesses indexada pelo id
+     */
+    public InterestIndex(Map<Integer, Interest> interests) {
+        this.interests = new HashMap<>(interests);
+        this.interestsByUser = new HashMap<>();
+        this.usersByInterest = new HashMap<>();
+
+        interests.values().forEach(interest -> {
+            BitSet users = new BitSet();
+            for (int id : interest.getUserIds()) {
+                if (id >= 0) {
+                    users.set(id);
+                    interestsByUser.computeIfAbsent(id, key -> new BitSet()).set(interest.getId());
+                }
+            }
+            usersByInterest.put(interest.getId(), users);
+        });
+    }
+
+    /**
+     * Método que retorna os interesses de um utilizador, por ordem do id
+     *
+     * @param idUser representa o id do utilizador
+     * @return a lista de interesses do utilizador
+     */
+    public List<Interest> interestsOf(int idUser) {
+        return toInterests(interestsByUser.get(idUser));
+    }
+
+    /**
+     * Método que retorna os interesses partilhados por dois utilizadores, por
+     * ordem do id, atraves da intersecao dos conjuntos de interesses
+     *
+     * @param idUser1 representa o id de um utilizador
+     * @param idUser2 representa o id de outro utilizador
+     * @return a lista de interesses partilhados
+     */
+    public List<Interest> sharedInterests(int idUser1, int idUser2) {
+        BitSet interests1 = interestsByUser.get(idUser1);
+        BitSet interests2 = interestsByUser.get(idUser2);
+        if (interests1 == null || interests2 == null || !interests1.intersects(interests2)) {
+            return new ArrayList<>();
+        }
+        BitSet shared = (BitSet) interests1.clone();
+        shared.and(interests2);
+        return toInterests(shared);
+    }
+
+    /**
+     * Método que verifica se dois utilizadores partilham algum interesse
+     *
+     * @param idUser1 representa o id de um utilizador
+     * @param idUser2 representa o id de outro utilizador
+     * @return true se partilham pelo menos um interesse
+     */
+    public boolean shareInterests(int idUser1, int idUser2) {
+        BitSet interests1 = interestsByUser.get(idUser1);
+        BitSet interests2 = interestsByUser.get(idUser2);
+        return interests1 != null && interests2 != null && interests1.intersects(interests2);
+    }
+
+    /**
+     * Método que retorna os ids dos utilizadores com um interesse
+     *
+     * @param idInterest representa o id do interesse
+     * @return uma copia do conjunto dos ids dos utilizadores, vazio se o interesse nao existir
+     */
+    public BitSet usersWith(int idInterest) {
+        BitSet users = usersByInterest.get(idInterest);
+        return users == null ? new BitSet() : (BitSet) users.clone();
+    }
+
+    /**
+     * Método que retorna os ids dos interesses de um utilizador
+     *
+     * @param idUser representa o id do utilizador
+     * @return uma copia do conjunto dos ids dos interesses, vazio se o utilizador nao tiver interesses
+     */
+    public BitSet interestIdsOf(int idUser) {
+        BitSet userInterests = interestsByUser.get(idUser);
+        return userInterests == null ? new BitSet() : (BitSet) userInterests.clone();
+    }
+
+    /**
+     * Método que retorna os ids dos utilizadores que partilham pelo menos um
+     * interesse com um utilizador, atraves da uniao dos conjuntos de
+     * utilizadores dos seus interesses
+     *
+     * @param idUser representa o id do utilizador
+     * @return o conjunto dos ids dos utilizadores, sem o proprio utilizador
+     */
+    public BitSet usersSharingInterestsWith(int idUser) {
+        BitSet users = new BitSet();
+        BitSet userInterests = interestsByUser.get(idUser);
+        if (userInterests != null) {
+            userInterests.stream().forEach(idInterest -> users.or(usersByInterest.get(idInterest)));
+            users.clear(idUser);
+        }
+        return users;
+    }
+
+    private List<Interest> toInterests(BitSet ids) {
+        List<Interest> list = new ArrayList<>();
+        if (ids != null) {
+            ids.stream().forEach(id -> list.add(interests.get(id)));
+        }
+        return list;
+    }
+}
@@ -10,40 +10,47 @@ public class IterativeModel implements Model {
     }
 
     /**
-     * Método que constroi o algoritmo Iterativo
+     * Método que constroi o algoritmo Iterativo. Os vertices sao procurados
+     * pelo id do utilizador e so sao inseridas as arestas do utilizador para
+     * os seus amigos que ainda nao existem, pelo que o custo depende apenas do
+     * numero de amigos do utilizador
      */
     @Override
     public DirectGraph<User, Relationship> modelConstructor() {
-        if (socialNetwork.getRelationships().isEmpty() || socialNetwork.getUsers().isEmpty()) {
+        if (socialNetwork.getRelationships().size() == 0 || socialNetwork.getUsers().isEmpty()) {
             socialNetwork.initializeData();
         } else if (idUser < 0) {
             return null;
         }
         User user = socialNetwork.getUsers().get(idUser);
 
-        if (getGraph().containVertice(user)) {
-            getGraph().vertices().stream().filter(userVertex -> userVertex.element()
-                    .getID() == idUser && userVertex.element().getType().equals(Type.INCLUIDO))
-                    .findFirst().ifPresent(userVertex -> userVertex.element().setType(Type.ADICIONADO));
+        Vertex<User> userVertex = getGraph().findVertex(user);
+        if (userVertex != null) {
+            if (userVertex.element().getType().equals(Type.INCLUIDO)) {
+                socialNetwork.setUserType(userVertex.element(), Type.ADICIONADO);
+            }
         } else {
-            user.addListInterest(socialNetwork.interestsOfUser(user.getID(), socialNetwork.getInterests()));
-            getGraph().insertVertex(user);
+            user.addListInterest(socialNetwork.interestsOfUser(user.getID()));
+            userVertex = getGraph().insertVertex(user);
         }
 
-        for (String idRelationship : socialNetwork.getRelationships().get(user.getID())) {
-            User userRelationship = socialNetwork.getUsers().get(Integer.parseInt(idRelationship));
-            if (!getGraph().containVertice(userRelationship)) {
-                userRelationship.setType(Type.INCLUIDO);
-                getGraph().insertVertex(userRelationship);
+        for (int idRelationship : socialNetwork.getRelationships().valuesOf(user.getID())) {
+            User userRelationship = socialNetwork.getUsers().get(idRelationship);
+            if (userRelationship == null || userRelationship.getID() == idUser) {
+                continue;
+            }
+            Vertex<User> relationshipVertex = getGraph().findVertex(userRelationship);
+            if (relationshipVertex == null) {
+                socialNetwork.setUserType(userRelationship, Type.INCLUIDO);
+                relationshipVertex = getGraph().insertVertex(userRelationship);
                 socialNetwork.getStatistics().addUsersIncluded(user, userRelationship);
-                userRelationship.addListInterest(socialNetwork.interestsOfUser(userRelationship.getID(),
-                        socialNetwork.getInterests()));
+                userRelationship.addListInterest(socialNetwork.interestsOfUser(userRelationship.getID()));
+            }
+            if (!getGraph().containsEdge(userVertex, relationshipVertex)) {
+                socialNetwork.insertEdge(userVertex.element(), relationshipVertex.element());
             }
         }
 
-        getGraph().vertices().stream().filter(userVertex -> userVertex.element().getID() != idUser)
-                .forEach(userVertex -> socialNetwork.insertEdge(user, userVertex.element()));
-
         return getGraph();
     }
 
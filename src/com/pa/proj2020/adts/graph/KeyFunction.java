@@ -0,0 +1,14 @@
+package com.pa.proj2020.adts.graph;
+
+import java.io.Serializable;
+
+/**
+ * Funcao que devolve a chave inteira de um elemento de um vertice, usada pelo
+ * {@link DirectGraph} e pelo {@link CompactDigraph} para indexar os vertices
+ *
+ * @param <V> tipo do elemento guardado num vertice
+ */
+@FunctionalInterface
+public interface KeyFunction<V> extends Serializable {
+    int keyOf(V element);
+}
@@ -1,24 +1,110 @@
 package com.pa.proj2020.adts.graph;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
- * Classe responsável pela criação do Logging. Faz uso do padrão Singleton
+ * Classe responsável pela criação do Logging. Faz uso do padrão Singleton.
+ * Guarda os ultimos CAPACITY registos num buffer circular; cada registo
+ * guarda o instante, o tipo de evento e os ids envolvidos, e so e formatado
+ * quando o Logging e exportado. Pode ser usado por varias threads
  */
 public final class Logging {
 
+    /**
+     * Numero maximo de registos guardados
+     */
+    public static final int CAPACITY = 1 << 16;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
     private static final Logging instance = new Logging();
-    private final List<String> log;
+    private final Record[] records;
+    private long count;
+    private volatile Consumer<Record> writer;
+
+    /**
+     * Tipo de evento de um registo
+     */
+    public enum EventType {
+        RELATIONSHIP_DIRECT, INTEREST
+    }
+
+    /**
+     * Classe que representa um registo do Logging
+     */
+    public static final class Record {
+        private final long timestamp;
+        private final EventType type;
+        private final int idUser;
+        private final int id;
+        private final int value;
+
+        private Record(long timestamp, EventType type, int idUser, int id, int value) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.idUser = idUser;
+            this.id = id;
+            this.value = value;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        public int getIdUser() {
+            return idUser;
+        }
+
+        /**
+         * Retorna o id do utilizador existente (relacionamento direto) ou do
+         * interesse (interesse)
+         *
+         * @return o id
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Retorna o numero de interesses partilhados (relacionamento direto)
+         *
+         * @return o numero de interesses partilhados
+         */
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * Método que formata o registo
+         *
+         * @return uma string com o registo
+         */
+        @Override
+        public String toString() {
+            String date = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())
+                    .format(DATE_FORMAT);
+            if (type == EventType.RELATIONSHIP_DIRECT) {
+                return "<" + date + "> | <" + idUser + "> | <" + id + "> | <" + value + ">";
+            }
+            return "<" + date + "> | <" + idUser + "> | <" + id + ">";
+        }
+    }
 
     /**
      * Cria um novo Logging
      */
     private Logging() {
-        this.log = new ArrayList<>();
+        this.records = new Record[CAPACITY];
     }
 
     /**
@@ -31,17 +117,6 @@ public final class Logging {
     }
 
 
-    /**
-     * Método auxiliar responsável por formatar a data
-     *
-     * @param localDateTime representa a data que pretendemos formatar
-     * @return uma string com a data formatada
-     */
-    private String formatLocalDateTime(LocalDateTime localDateTime) {
-        return localDateTime.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-    }
-
-
     /**
      * Método que permite gerar o Logging para a adição de um relacionamento direto
      *
@@ -50,8 +125,8 @@ public final class Logging {
      * @param interests      representa o numero de interesses partilhados
      */
     public void addRelationshipDirect(int idUserAdded, int idUserExistent, int interests) {
-        addToLog("<" + this.formatLocalDateTime(LocalDateTime.now()) + "> | <" + idUserAdded +
-                "> | <" + idUserExistent + "> | <" + interests + ">");
+        addToLog(new Record(System.currentTimeMillis(), EventType.RELATIONSHIP_DIRECT,
+                idUserAdded, idUserExistent, interests));
     }
 
     /**
@@ -61,12 +136,51 @@ public final class Logging {
      * @param idInterest  representa o id do interesse
      */
     public void addInterest(int idUserAdded, int idInterest) {
-        addToLog("<" + this.formatLocalDateTime(LocalDateTime.now()) + "> | <" + idUserAdded +
-                "> | <" + idInterest + ">");
+        addToLog(new Record(System.currentTimeMillis(), EventType.INTEREST, idUserAdded, idInterest, 0));
+    }
+
+    private void addToLog(Record record) {
+        synchronized (this) {
+            records[(int) (count++ % CAPACITY)] = record;
+        }
+        Consumer<Record> current = writer;
+        if (current != null) {
+            current.accept(record);
+        }
     }
 
-    private void addToLog(String logCreated) {
-        log.add(logCreated);
+    /**
+     * Método que define para onde sao enviados os novos registos, alem de
+     * ficarem guardados no Logging
+     *
+     * @param writer recebe cada registo, por formatar
+     */
+    public void setWriter(Consumer<Record> writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Método que retorna os registos guardados, do mais antigo para o mais recente
+     *
+     * @return uma lista com os registos guardados
+     */
+    public synchronized List<Record> getRecords() {
+        int size = (int) Math.min(count, CAPACITY);
+        List<Record> list = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            list.add(records[(int) (i % CAPACITY)]);
+        }
+        return list;
+    }
+
+    /**
+     * Método que retorna o numero de registos criados, incluindo os que ja
+     * foram substituidos no buffer
+     *
+     * @return o numero de registos criados
+     */
+    public synchronized long getCount() {
+        return count;
     }
 
     /**
@@ -76,7 +190,7 @@ public final class Logging {
      */
     @Override
     public String toString() {
-        return log.stream().map(logLine -> "\n" + logLine).collect(Collectors
+        return getRecords().stream().map(logLine -> "\n" + logLine).collect(Collectors
                 .joining("", "******************** Logging ********************",
                         "\n******************** End ********************"));
     }
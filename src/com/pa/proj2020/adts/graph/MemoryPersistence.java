@@ -3,40 +3,42 @@ package com.pa.proj2020.adts.graph;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
-import java.io.*;
-import java.util.HashMap;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 
 public class MemoryPersistence {
 
+    private static final String SNAPSHOT_FILE = "outputFiles/exportSerialization";
+
     SocialNetwork socialNetwork;
 
     public MemoryPersistence(SocialNetwork socialNetwork) {
         this.socialNetwork = socialNetwork;
     }
 
+    /**
+     * Exporta o grafo da social network no formato binario de {@link GraphSnapshot}
+     */
     protected void exportSerialization() {
         try {
-            FileOutputStream fileOut = new FileOutputStream("outputFiles/exportSerialization");
-            ObjectOutputStream out = new ObjectOutputStream(fileOut);
-            out.writeObject(socialNetwork.getVertices());
-            out.close();
-            fileOut.close();
+            GraphSnapshot.write(socialNetwork.getGraph(), Paths.get(SNAPSHOT_FILE));
         } catch (IOException e) {
             System.err.println(e.getMessage());
         }
     }
 
+    /**
+     * Importa o grafo exportado, abrindo o snapshot mapeado em memoria
+     *
+     * @return o grafo importado ou um grafo vazio se o snapshot nao puder ser lido
+     */
     protected DirectGraph<User, Relationship> importSerialization() {
-        DirectGraph<User, Relationship> temp = new DirectGraph<>();
-        HashMap<User, Vertex<User>> hashMap;
+        DirectGraph<User, Relationship> temp = new DirectGraph<>(User::getID);
         try {
-            FileInputStream fileIn = new FileInputStream("outputFiles/exportSerialization");
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-            hashMap = (HashMap<User, Vertex<User>>) in.readObject();
-            temp = new DirectGraph<>(hashMap);
-            in.close();
-            fileIn.close();
-        } catch (IOException | ClassNotFoundException e) {
+            temp = GraphSnapshot.open(Paths.get(SNAPSHOT_FILE)).toGraph();
+        } catch (IOException e) {
             System.err.println(e.getMessage());
         }
         return temp;
@@ -2,16 +2,27 @@ package com.pa.proj2020.adts.graph;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.IntStream;
 
 
 public class ReadData {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long CHUNK_SIZE = 1 << 23;
+
 
     /**
      * Retorna uma coleção HashMap com a Key sendo o primeiro elemento e values a lista de valores associados a esse elemento
@@ -43,4 +54,302 @@ public class ReadData {
         return data;
     }
 
+    /**
+     * Le um ficheiro csv com ids separados por ';' para uma {@link CsvTable},
+     * lendo o ficheiro por blocos e convertendo os ids diretamente dos bytes,
+     * sem criar strings. Os caracteres ' sao ignorados, como no readData.
+     * Ficheiros grandes sao divididos em partes que comecam no inicio de uma
+     * linha e que sao convertidas em paralelo na ForkJoinPool comum; as partes
+     * sao juntas pela ordem do ficheiro
+     *
+     * @param filename  nome do ficheiro na pasta inputFiles
+     * @param withNames true se o segundo campo e um nome (user_names.csv e
+     *                  interest_names.csv), false se todos os campos sao ids
+     * @return a tabela lida ou null se o ficheiro nao puder ser lido
+     */
+    public static CsvTable readTable(String filename, boolean withNames) {
+        return readTable(filename, withNames, CHUNK_SIZE);
+    }
+
+    /**
+     * Le um ficheiro csv para uma {@link CsvTable}, dividindo-o em partes com
+     * um tamanho dado
+     *
+     * @param filename  nome do ficheiro na pasta inputFiles
+     * @param withNames true se o segundo campo e um nome
+     * @param chunkSize tamanho aproximado em bytes de cada parte
+     * @return a tabela lida ou null se o ficheiro nao puder ser lido
+     */
+    static CsvTable readTable(String filename, boolean withNames, long chunkSize) {
+        if (filename == null || filename.equals("")) return null;
+
+        filename = "inputFiles\\" + filename;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, chunkSize);
+            TableParser[] parts = new TableParser[bounds.length - 1];
+            ForkJoinPool.commonPool().invoke(new ChunkTask(channel, bounds, parts, 0, parts.length, withNames));
+            return TableParser.concat(parts, withNames);
+        } catch (IOException | UncheckedIOException | NumberFormatException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Divide um ficheiro em partes de cerca de chunkSize bytes, acertando o
+     * inicio de cada parte para o inicio da linha seguinte
+     *
+     * @return as posicoes de inicio das partes, com o tamanho do ficheiro no fim
+     */
+    private static long[] chunkBounds(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (long position = chunkSize; position < size; position += chunkSize) {
+            long start = nextLineStart(channel, Math.max(position, bounds.get(bounds.size() - 1)), buffer);
+            if (start < size && start > bounds.get(bounds.size() - 1)) {
+                bounds.add(start);
+            }
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Retorna a posicao do primeiro inicio de linha a partir de uma posicao
+     */
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long current = position - 1;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+    }
+
+    /**
+     * Tarefa que converte as partes de um ficheiro, dividindo-as ao meio ate
+     * ficar com uma so parte
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final TableParser[] parts;
+        private final int from;
+        private final int to;
+        private final boolean withNames;
+
+        ChunkTask(FileChannel channel, long[] bounds, TableParser[] parts, int from, int to, boolean withNames) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+            this.withNames = withNames;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, bounds, parts, from, middle, withNames),
+                        new ChunkTask(channel, bounds, parts, middle, to, withNames));
+                return;
+            }
+            TableParser parser = new TableParser(withNames);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = bounds[from];
+            try {
+                while (position < bounds[from + 1]) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(BUFFER_SIZE, bounds[from + 1] - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                    buffer.flip();
+                    parser.parse(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            parser.endLine();
+            parts[from] = parser;
+        }
+    }
+
+    /**
+     * Classe que converte os bytes de um ficheiro csv em linhas de uma
+     * {@link CsvTable}. Os bytes podem ser dados em varios blocos, com linhas
+     * partidas entre blocos
+     */
+    static final class TableParser {
+        private final boolean withNames;
+        private final IntArray keys = new IntArray();
+        private final IntArray offsets = new IntArray();
+        private final IntArray values = new IntArray();
+        private final ArrayList<String> names;
+        private byte[] name = new byte[64];
+        private int nameLength;
+        private int field;
+        private int number;
+        private boolean digits;
+        private boolean lineStarted;
+        private int key;
+        private boolean hasKey;
+
+        TableParser(boolean withNames) {
+            this.withNames = withNames;
+            this.names = withNames ? new ArrayList<>() : null;
+            offsets.add(0);
+        }
+
+        /**
+         * Converte os bytes de um bloco
+         *
+         * @param buffer bloco com os bytes entre a posicao e o limite
+         */
+        void parse(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                byte c = buffer.get();
+                if (c == '\n') {
+                    endLine();
+                } else if (c == '\r') {
+                    // fim de linha do windows, a linha termina no '\n'
+                } else if (c == '\'') {
+                    lineStarted = true;
+                } else if (c == ';') {
+                    lineStarted = true;
+                    endField();
+                    field++;
+                } else {
+                    lineStarted = true;
+                    if (withNames && field >= 1) {
+                        if (field == 1) {
+                            appendName(c);
+                        }
+                    } else if (c >= '0' && c <= '9') {
+                        if (number > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                            throw new NumberFormatException("ID TOO LARGE");
+                        }
+                        number = number * 10 + (c - '0');
+                        digits = true;
+                    } else if (c != ' ' && c != '\t') {
+                        throw new NumberFormatException("INVALID ID");
+                    }
+                }
+            }
+        }
+
+        private void appendName(byte c) {
+            if (nameLength == name.length) {
+                name = Arrays.copyOf(name, name.length * 2);
+            }
+            name[nameLength++] = c;
+        }
+
+        private void endField() {
+            if (field == 0) {
+                key = number;
+                hasKey = digits;
+            } else if (!withNames && digits) {
+                values.add(number);
+            }
+            number = 0;
+            digits = false;
+        }
+
+        /**
+         * Termina a linha atual, usado no fim do ficheiro ou da parte quando
+         * nao acabam com uma mudanca de linha
+         */
+        void endLine() {
+            if (!lineStarted) {
+                return;
+            }
+            endField();
+            if (!hasKey) {
+                throw new NumberFormatException("INVALID ID");
+            }
+            keys.add(key);
+            offsets.add(values.size());
+            if (withNames) {
+                names.add(new String(name, 0, nameLength, StandardCharsets.UTF_8));
+            }
+            nameLength = 0;
+            field = 0;
+            lineStarted = false;
+            hasKey = false;
+        }
+
+        /**
+         * Junta as linhas convertidas de varias partes de um ficheiro, pela
+         * ordem das partes
+         *
+         * @param parts     partes convertidas, com a ultima linha terminada
+         * @param withNames true se as linhas tem nome
+         * @return a tabela com as linhas de todas as partes
+         */
+        static CsvTable concat(TableParser[] parts, boolean withNames) {
+            int rows = 0;
+            int numValues = 0;
+            for (TableParser part : parts) {
+                rows += part.keys.size;
+                numValues += part.values.size;
+            }
+            int[] keys = new int[rows];
+            int[] offsets = new int[rows + 1];
+            int[] values = new int[numValues];
+            String[] names = withNames ? new String[rows] : null;
+
+            int row = 0;
+            int base = 0;
+            for (TableParser part : parts) {
+                int partRows = part.keys.size;
+                System.arraycopy(part.keys.data, 0, keys, row, partRows);
+                System.arraycopy(part.values.data, 0, values, base, part.values.size);
+                for (int i = 1; i <= partRows; i++) {
+                    offsets[row + i] = base + part.offsets.data[i];
+                }
+                if (withNames) {
+                    for (int i = 0; i < partRows; i++) {
+                        names[row + i] = part.names.get(i);
+                    }
+                }
+                row += partRows;
+                base += part.values.size;
+            }
+            return new CsvTable(keys, offsets, values, names);
+        }
+    }
+
+    /**
+     * Array de inteiros que cresce conforme sao adicionados valores
+     */
+    static final class IntArray {
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size + (size >> 1));
+            }
+            data[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,246 @@
+package com.pa.proj2020.adts.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classe que escreve registos de log num ficheiro, numa thread propria. Os
+ * registos sao colocados numa fila limitada e a thread formata-os (com
+ * toString) e escreve-os por lotes
+ * no fim do ficheiro atual, fazendo o fsync no maximo uma vez por intervalo.
+ * Quando o ficheiro atinge o tamanho maximo ou a idade maxima e criado um
+ * ficheiro novo
+ */
+public class RollingLogWriter {
+    private static final String HEADER = "******************** Logging ********************\n";
+    private static final String FOOTER = "******************** End ********************\n";
+    private static final int BATCH_SIZE = 1024;
+
+    private final Path directory;
+    private final String prefix;
+    private final long maxFileBytes;
+    private final long maxFileAgeMillis;
+    private final long syncIntervalMillis;
+    private final BlockingQueue<Entry> queue;
+    private final Thread thread;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private volatile boolean closed;
+    private FileChannel channel;
+    private long fileBytes;
+    private long fileCreated;
+    private long lastSync;
+    private boolean unsynced;
+
+    /**
+     * Registo na fila: um registo de log ou um pedido de escrita, com um latch
+     * que e libertado depois de os registos anteriores estarem no disco
+     */
+    private static final class Entry {
+        private final Object record;
+        private final CountDownLatch written;
+
+        private Entry(Object record, CountDownLatch written) {
+            this.record = record;
+            this.written = written;
+        }
+    }
+
+    /**
+     * Cria o escritor e inicia a sua thread
+     *
+     * @param directory          pasta dos ficheiros de log
+     * @param prefix             inicio do nome dos ficheiros, seguido da data de criacao
+     * @param capacity           numero maximo de registos na fila
+     * @param maxFileBytes       tamanho a partir do qual e criado um ficheiro novo
+     * @param maxFileAgeMillis   idade a partir da qual e criado um ficheiro novo
+     * @param syncIntervalMillis intervalo minimo entre dois fsync
+     */
+    public RollingLogWriter(Path directory, String prefix, int capacity, long maxFileBytes,
+                            long maxFileAgeMillis, long syncIntervalMillis) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeMillis = maxFileAgeMillis;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::run, "log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Coloca um registo na fila. So bloqueia se a fila estiver cheia
+     *
+     * @param record registo, formatado com toString na thread de escrita, sem mudanca de linha
+     */
+    public void append(Object record) {
+        if (closed) {
+            return;
+        }
+        try {
+            queue.put(new Entry(record, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Escreve os registos em fila e espera que estejam no disco
+     */
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        try {
+            queue.put(new Entry(null, written));
+            boolean done = false;
+            while (!done && thread.isAlive()) {
+                done = written.await(syncIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Escreve os registos em fila, fecha o ficheiro atual e termina a thread
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        queue.offer(new Entry(null, null));
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Entry first = queue.poll(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    write(batch);
+                    batch.clear();
+                } else if (unsynced) {
+                    sync();
+                }
+            }
+        } catch (InterruptedException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            closed = true;
+            closeFile();
+        }
+    }
+
+    private void write(List<Entry> batch) throws IOException {
+        boolean syncNow = false;
+        for (Entry entry : batch) {
+            if (entry.record != null) {
+                writeText(entry.record + "\n");
+            } else {
+                syncNow |= entry.written != null;
+            }
+        }
+        writeBuffer();
+        long now = System.currentTimeMillis();
+        if (unsynced && (syncNow || now - lastSync >= syncIntervalMillis)) {
+            sync();
+        }
+        batch.stream().filter(entry -> entry.written != null).forEach(entry -> entry.written.countDown());
+    }
+
+    private void writeText(String text) throws IOException {
+        if (channel == null || fileBytes >= maxFileBytes
+                || System.currentTimeMillis() - fileCreated >= maxFileAgeMillis) {
+            roll();
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length) {
+            writeBuffer();
+        }
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+        fileBytes += bytes.length;
+        unsynced = true;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void sync() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+        lastSync = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            writeBuffer();
+            writeFully(ByteBuffer.wrap(FOOTER.getBytes(StandardCharsets.UTF_8)));
+            channel.force(false);
+            channel.close();
+        }
+        Files.createDirectories(directory);
+        String name = prefix + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH-mm-ss"));
+        Path path = directory.resolve(name + ".log");
+        for (int i = 1; Files.exists(path); i++) {
+            path = directory.resolve(name + " (" + i + ").log");
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        fileCreated = System.currentTimeMillis();
+        fileBytes = 0;
+        writeFully(ByteBuffer.wrap(HEADER.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void closeFile() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeBuffer();
+            writeFully(ByteBuffer.wrap(FOOTER.getBytes(StandardCharsets.UTF_8)));
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+}
@@ -2,20 +2,23 @@ package com.pa.proj2020.adts.graph;
 
 import observer.Subject;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
  * Classe responsável pela gestão da Social Network
  */
 public class SocialNetwork extends Subject implements Originator, Serializable {
+    private static final int CHECKPOINT_INTERVAL = 16;
     private final HashMap<Integer, User> users;
-    private final HashMap<Integer, ArrayList<String>> relationships;
+    private CsvTable relationships;
     private final HashMap<Integer, Interest> interests;
+    private InterestIndex interestIndex;
+    private transient GraphMemento recording;
+    private int mementosCreated;
     private final Statistics statistics;
     private final MemoryPersistence memoryPersistence;
     private DirectGraph<User, Relationship> graph;
@@ -27,11 +30,12 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
      * Inicializa os atributos
      */
     public SocialNetwork() {
-        graph = new DirectGraph<>();
+        graph = new DirectGraph<>(User::getID);
         users = new HashMap<>();
-        relationships = new HashMap<>();
+        relationships = new CsvTable();
         interests = new HashMap<>();
         statistics = new Statistics();
+        statistics.attach(graph);
         memoryPersistence = new MemoryPersistence(this);
     }
 
@@ -48,7 +52,7 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
         this.fileObject = new FileObject(userNamesFile, relationshipsFile, interestNamesFile, interestsFile);
     }
 
-    public HashMap<Integer, ArrayList<String>> getRelationships() {
+    public CsvTable getRelationships() {
         return relationships;
     }
 
@@ -76,23 +80,33 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
 
     /**
      * Adiciona nas coleções a informação correspondente encontrada nos ficheiros user_names.csv e relationships.csv
+     * Os quatro ficheiros sao lidos em paralelo na ForkJoinPool comum
      */
     public void initializeData() {
-        HashMap<String, ArrayList<String>> temp = ReadData.readData("user_names.csv");
-        HashMap<String, ArrayList<String>> tempRelationships = ReadData.readData("relationships.csv");
-        HashMap<String, ArrayList<String>> tempInterests = ReadData.readData("interest_names.csv");
-        HashMap<String, ArrayList<String>> tempIdsOfUsersInterests = ReadData.readData("interests.csv");
-
-        temp.keySet().forEach(id -> users
-                .put(Integer.parseInt(id), new User(temp.get(id).get(0), Integer.parseInt(id), Type.ADICIONADO)));
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ForkJoinTask<CsvTable> usersTask = pool.submit(() -> ReadData.readTable("user_names.csv", true));
+        ForkJoinTask<CsvTable> relationshipsTask = pool.submit(() -> ReadData.readTable("relationships.csv", false));
+        ForkJoinTask<CsvTable> interestsTask = pool.submit(() -> ReadData.readTable("interest_names.csv", true));
+        ForkJoinTask<CsvTable> idsOfUsersInterestsTask = pool.submit(() -> ReadData.readTable("interests.csv", false));
+
+        CsvTable temp = usersTask.join();
+        CsvTable tempRelationships = relationshipsTask.join();
+        CsvTable tempInterests = interestsTask.join();
+        CsvTable tempIdsOfUsersInterests = idsOfUsersInterestsTask.join();
+
+        for (int row = 0; row < temp.size(); row++) {
+            int id = temp.getKey(row);
+            users.put(id, new User(temp.getName(row), id, Type.ADICIONADO));
+        }
 
-        tempRelationships.keySet().forEach(id -> relationships
-                .put(Integer.parseInt(id), tempRelationships.get(id)));
+        this.relationships = tempRelationships;
 
-        tempInterests.keySet().forEach(id -> interests
-                .put(Integer.parseInt(id), new Interest(Integer.parseInt(id),
-                        tempInterests.get(id).get(0), tempIdsOfUsersInterests.get(id))));
+        for (int row = 0; row < tempInterests.size(); row++) {
+            int id = tempInterests.getKey(row);
+            interests.put(id, new Interest(id, tempInterests.getName(row), tempIdsOfUsersInterests.valuesOf(id)));
+        }
 
+        this.interestIndex = new InterestIndex(interests);
     }
 
     /**
@@ -101,7 +115,43 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
      * @return grafo com algoritmo total
      */
     public DirectGraph<User, Relationship> constructModelTotal() {
-        return (new TotalModel(this).modelConstructor());
+        DirectGraph<User, Relationship> result = new TotalModel(this).modelConstructor();
+        SocialNetworkLog.updateLog();
+        return result;
+    }
+
+    /**
+     * Método que constroi o algoritmo Total num grafo compacto, indexado pelos
+     * ids dos utilizadores, em vez do grafo da social network. Depois de
+     * carregados os ficheiros csv, serve para consultas de leitura sobre redes
+     * grandes (percursos, distancias, graus) com muito menos memoria.
+     * <p>
+     * Nao e uma opcao da vista nem substitui {@link #getGraph()}: o
+     * {@link CompactDigraph} nao e um {@link observer.Subject} nem envia
+     * {@link GraphEvent}, dos quais dependem as {@link Statistics}, os
+     * mementos do undo, o modelo iterativo e as atualizacoes incrementais do
+     * painel do grafo
+     *
+     * @return grafo compacto com algoritmo total
+     */
+    public CompactDigraph<User, Relationship> constructModelCompact() {
+        CompactDigraph<User, Relationship> compactGraph =
+                new CompactDigraph<>(User::getID, this.users.size(), this.relationships.numValues());
+
+        this.users.values().forEach(compactGraph::insertVertex);
+
+        for (int row = 0; row < this.relationships.size(); row++) {
+            User user1 = this.users.get(this.relationships.getKey(row));
+            for (int i = 0; i < this.relationships.rowLength(row); i++) {
+                User user2 = this.users.get(this.relationships.getValue(row, i));
+                if (user1 != null && user2 != null) {
+                    compactGraph.insertEdge(user1, user2, createRelationship(user1, user2, false));
+                }
+            }
+        }
+        SocialNetworkLog.updateLog();
+
+        return compactGraph;
     }
 
     /**
@@ -114,7 +164,11 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
     }
 
     protected void setGraph(DirectGraph<User, Relationship> graph) {
+        if (this.recording != null && graph != this.graph) {
+            this.recording.graphReplaced(graph);
+        }
         this.graph = graph;
+        this.statistics.attach(graph);
     }
 
     /**
@@ -126,6 +180,19 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
         return this.users;
     }
 
+    /**
+     * Metodo que retorna o indice invertido dos interesses, construindo-o se os
+     * interesses ainda nao foram indexados
+     *
+     * @return o indice dos interesses
+     */
+    public InterestIndex getInterestIndex() {
+        if (this.interestIndex == null) {
+            this.interestIndex = new InterestIndex(this.interests);
+        }
+        return this.interestIndex;
+    }
+
     /**
      * Metodo que retorna os interesses de um utilizador
      *
@@ -133,7 +200,11 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
      * @return a lista de interesses do utilizador fornecido
      */
     public List<Interest> interestsOfUser(int idUser) {
-        return interestsOfUser(idUser, this.interests);
+        if (idUser < 0) return null;
+        List<Interest> list = getInterestIndex().interestsOf(idUser);
+
+        list.forEach(interest -> SocialNetworkLog.getLog().addInterest(idUser, interest.getId()));
+        return list;
     }
 
     /**
@@ -156,41 +227,107 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
     public void insertEdge(User user1, User user2, boolean addIndirect) {
         if (user1 == null || user2 == null) return;
 
-        boolean relationshipDirect = false;
+        this.graph.insertEdge(user1, user2, createRelationship(user1, user2, addIndirect));
 
-        List<Interest> tempInterests = this.interests.values().stream().filter(interest -> interest.getIdsOfUsers()
-                .contains(String.valueOf(user1.getID())) &&
-                interest.getIdsOfUsers().contains(String.valueOf(user2.getID()))).collect(Collectors.toList());
+    }
+
+    /**
+     * Metodo que cria o relacionamento entre dois utilizadores, de acordo com os
+     * interesses que partilham e com a existencia de um relacionamento direto.
+     * Pode ser chamado por varias threads depois de o indice dos interesses
+     * ter sido construido
+     *
+     * @param user1       representa um utilizador
+     * @param user2       representa outro utilizador
+     * @param addIndirect true se quiser adicionar relacoes indiretas, false caso contrario
+     * @return o relacionamento entre os dois utilizadores
+     */
+    Relationship createRelationship(User user1, User user2, boolean addIndirect) {
+        boolean relationshipDirect = false;
 
-        if (this.relationships.get(user1.getID()).contains(String.valueOf(user2.getID()))) relationshipDirect = true;
+        List<Interest> tempInterests = getInterestIndex().sharedInterests(user1.getID(), user2.getID());
 
-        checkInterest(user1, user2, addIndirect, tempInterests, relationshipDirect);
-        SocialNetworkLog.updateLog();
+        if (this.relationships.contains(user1.getID(), user2.getID())) relationshipDirect = true;
 
+        return checkInterest(user1, user2, addIndirect, tempInterests, relationshipDirect);
     }
 
-    private void checkInterest(User user1, User user2, boolean addIndirect, List<Interest> tempInterests, boolean relationshipDirect) {
+    private Relationship checkInterest(User user1, User user2, boolean addIndirect, List<Interest> tempInterests, boolean relationshipDirect) {
         Relationship relationship = new RelationshipSimple();
         if (!tempInterests.isEmpty() && ((!relationshipDirect && addIndirect) || (relationshipDirect && !addIndirect))) {
             relationship = new RelationshipIndirect(tempInterests);
         }
-        this.graph.insertEdge(user1, user2, relationship);
         SocialNetworkLog.getLog().addRelationshipDirect(user1.getID(), user2.getID(), tempInterests.size());
+        return relationship;
     }
 
     /**
-     * Metodo que adiciona relacoes indiretas
+     * Metodo que adiciona relacoes indiretas de um utilizador do grafo para os
+     * utilizadores do grafo com quem partilha interesses e com quem nao tem um
+     * relacionamento direto. Os candidatos sao obtidos do indice dos
+     * interesses, sem percorrer todos os vertices
      *
      * @param idUser representa o user
+     * @return o numero de relacoes indiretas adicionadas
+     */
+    public int addIndirectRelationships(int idUser) {
+        Vertex<User> userVertex = this.graph.findVertex(this.users.get(idUser));
+        if (userVertex == null) return 0;
+
+        Map<User, Relationship> indirect = indirectRelationships(userVertex);
+        indirect.forEach((user, relationship) -> this.graph.insertEdge(userVertex.element(), user, relationship));
+        return indirect.size();
+    }
+
+    /**
+     * Metodo que adiciona as relacoes indiretas de todos os utilizadores do
+     * grafo. As relacoes de cada utilizador sao calculadas em paralelo e as
+     * arestas sao depois inseridas de uma so vez, pela ordem dos vertices
+     *
+     * @return o numero de relacoes indiretas adicionadas
      */
-    public void addIndirectRelationships(int idUser) {
-        User user = this.users.get(idUser);
+    public int addIndirectRelationships() {
+        getInterestIndex();
+        List<Vertex<User>> userVertices = new ArrayList<>(this.graph.vertices());
+        List<Map<User, Relationship>> indirect = userVertices.parallelStream().map(this::indirectRelationships)
+                .collect(Collectors.toList());
+
+        int total = indirect.stream().mapToInt(Map::size).sum();
+        User[] sources = new User[total];
+        User[] targets = new User[total];
+        Relationship[] elements = new Relationship[total];
+        int k = 0;
+        for (int i = 0; i < userVertices.size(); i++) {
+            for (Map.Entry<User, Relationship> entry : indirect.get(i).entrySet()) {
+                sources[k] = userVertices.get(i).element();
+                targets[k] = entry.getKey();
+                elements[k++] = entry.getValue();
+            }
+        }
+        this.graph.insertEdges(sources, targets, elements);
+        return total;
+    }
 
-        for (Vertex<User> userVertex : this.graph.vertices()) {
-            if (userVertex.element().getID() != idUser) {
-                this.insertEdge(user, userVertex.element(), true);
+    /**
+     * Metodo que cria as relacoes indiretas que faltam a um utilizador do
+     * grafo, sem alterar o grafo, pelo que pode ser chamado por varias threads
+     *
+     * @param userVertex representa o vertice do user
+     * @return os relacionamentos indiretos, indexados pelo utilizador de destino
+     */
+    private Map<User, Relationship> indirectRelationships(Vertex<User> userVertex) {
+        User user = userVertex.element();
+        Map<User, Relationship> indirect = new LinkedHashMap<>();
+        BitSet candidates = getInterestIndex().usersSharingInterestsWith(user.getID());
+
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            Vertex<User> other = this.graph.findVertex(this.users.get(id));
+            if (other != null && !this.relationships.contains(user.getID(), id)
+                    && !this.graph.containsEdge(userVertex, other)) {
+                indirect.put(other.element(), createRelationship(user, other.element(), true));
             }
         }
+        return indirect;
     }
 
     /**
@@ -200,6 +337,101 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
      */
     public void constructModelIterative(int idUser) {
         new IterativeModel(this, idUser).modelConstructor();
+        SocialNetworkLog.updateLog();
+    }
+
+    /**
+     * Método que adiciona varios utilizadores com o algoritmo Iterativo, pela
+     * ordem fornecida. O log so e escrito no fim e os observers sao notificados
+     * uma unica vez, com o grafo, depois de todos os utilizadores terem sido
+     * adicionados. Os ids que nao correspondem a utilizadores sao ignorados
+     *
+     * @param idsUsers representa os ids dos users
+     * @return a lista dos ids dos users adicionados
+     */
+    public List<Integer> constructModelIterative(Collection<Integer> idsUsers) {
+        List<Integer> added = new ArrayList<>();
+        for (int idUser : new LinkedHashSet<>(idsUsers)) {
+            if (this.users.containsKey(idUser)) {
+                new IterativeModel(this, idUser).modelConstructor();
+                added.add(idUser);
+            }
+        }
+        SocialNetworkLog.updateLog();
+        notifyObservers(this.graph);
+        return added;
+    }
+
+    /**
+     * Método que adiciona com o algoritmo Iterativo todos os utilizadores com
+     * ids entre os dois ids fornecidos, inclusive
+     *
+     * @param fromIdUser representa o primeiro id
+     * @param toIdUser   representa o ultimo id
+     * @return a lista dos ids dos users adicionados
+     */
+    public List<Integer> constructModelIterative(int fromIdUser, int toIdUser) {
+        return constructModelIterative(idsBetween(fromIdUser, toIdUser));
+    }
+
+    /**
+     * Método que adiciona com o algoritmo Iterativo os utilizadores de varios
+     * intervalos de ids, pela ordem dos intervalos, numa so operacao: o log so
+     * e escrito uma vez e os observers sao notificados uma unica vez. Um id
+     * isolado e um intervalo com os dois limites iguais
+     *
+     * @param ranges representa os intervalos, cada um com o primeiro e o ultimo id
+     * @return a lista dos ids dos users adicionados
+     */
+    public List<Integer> constructModelIterativeRanges(List<int[]> ranges) {
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        for (int[] range : ranges) {
+            ids.addAll(idsBetween(range[0], range[1]));
+        }
+        return constructModelIterative(ids);
+    }
+
+    /**
+     * Retorna os ids dos utilizadores entre dois ids, inclusive, por ordem
+     * crescente, sem percorrer os ids que nao correspondem a utilizadores
+     */
+    private List<Integer> idsBetween(int fromIdUser, int toIdUser) {
+        if (fromIdUser == toIdUser) {
+            return this.users.containsKey(fromIdUser) ? Collections.singletonList(fromIdUser)
+                    : Collections.emptyList();
+        }
+        return this.users.keySet().stream().filter(id -> id >= fromIdUser && id <= toIdUser)
+                .sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Método que adiciona com o algoritmo Iterativo um utilizador e todos os
+     * utilizadores a que chega seguindo no maximo hops relacionamentos do
+     * ficheiro relationships.csv, por ordem da distancia
+     *
+     * @param idUser representa o user
+     * @param hops   representa o numero maximo de relacionamentos a seguir
+     * @return a lista dos ids dos users adicionados
+     */
+    public List<Integer> constructModelIterativeNeighborhood(int idUser, int hops) {
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        if (!this.users.containsKey(idUser)) {
+            return constructModelIterative(ids);
+        }
+        ids.add(idUser);
+        List<Integer> frontier = Collections.singletonList(idUser);
+        for (int hop = 0; hop < hops && !frontier.isEmpty(); hop++) {
+            List<Integer> next = new ArrayList<>();
+            for (int id : frontier) {
+                for (int friend : this.relationships.valuesOf(id)) {
+                    if (this.users.containsKey(friend) && ids.add(friend)) {
+                        next.add(friend);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return constructModelIterative(ids);
     }
 
     /**
@@ -244,32 +476,10 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
      * @return a lista de utilizadores nao inseridos
      */
     public List<String> getUsersNotInserted() {
-        ArrayList<Integer> tempList = this.graph.vertices().stream()
-                .map(user -> user.element().getID()).collect(Collectors.toCollection(ArrayList::new));
-
-        return users.keySet().stream().filter(id -> !tempList.contains(id))
+        return users.keySet().stream().filter(id -> !this.graph.containVertice(this.users.get(id)))
                 .map(id -> this.users.get(id).toString()).collect(Collectors.toCollection(ArrayList::new));
     }
 
-    /**
-     * Metodo que retorna os interesses de um utilizador
-     *
-     * @param idUser representa o id do utilizador
-     * @return a lista de interesses do utilizador fornecido
-     */
-    public List<Interest> interestsOfUser(int idUser, HashMap<Integer, Interest> thisInterests) {
-        if (idUser < 0) return null;
-        ArrayList<Interest> list = new ArrayList<>();
-
-        thisInterests.values().stream().filter(interest -> interest.getIdsOfUsers()
-                .contains(String.valueOf(idUser))).forEach(interest -> {
-            list.add(interest);
-            SocialNetworkLog.getLog().addInterest(idUser, interest.getId());
-        });
-        SocialNetworkLog.updateLog();
-        return list;
-    }
-
     /**
      * Metodo que retorna a estatistica de utilizadores adicionados
      *
@@ -306,6 +516,15 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
         return this.statistics.interestMostSharedStats(this.graph);
     }
 
+    /**
+     * Metodo que retorna a estatistica dos graus de separacao entre utilizadores
+     *
+     * @return estatistica dos graus de separacao entre utilizadores
+     */
+    public String degreesOfSeparationStats() {
+        return this.statistics.degreesOfSeparationStats(this.graph);
+    }
+
     /**
      * Metodo que retorna a estatistica de utilizadores com mais relacionamentos
      *
@@ -315,6 +534,16 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
         return this.statistics.topFiveUsersWithMostRelationshipsStats(this.graph);
     }
 
+    /**
+     * Metodo que retorna a estatistica dos k utilizadores com mais relacionamentos
+     *
+     * @param k numero de utilizadores pretendido
+     * @return estatistica dos k utilizadores com mais relacionamentos
+     */
+    public Map<User, Integer> topUsersWithMostRelationshipsStats(int k) {
+        return this.statistics.topUsersWithMostRelationshipsStats(this.graph, k);
+    }
+
     /**
      * Metodo que permite obter uma colecao de interesses
      *
@@ -338,61 +567,71 @@ public class SocialNetwork extends Subject implements Originator, Serializable {
     }
 
     /**
-     * Metodo que permite criar o memento
+     * Metodo que permite obter a estatistica do top k de interesses
+     *
+     * @param k numero de interesses pretendido
+     * @return a estatistica do top k de interesses
+     */
+    public Map<Interest, Integer> topInterestsStats(int k) {
+        return this.statistics.topInterestsStats(this.graph, k);
+    }
+
+    /**
+     * Metodo que permite criar o memento. O memento anterior deixa de registar
+     * as operacoes sobre o grafo e o novo memento passa a registá-las; de
+     * CHECKPOINT_INTERVAL em CHECKPOINT_INTERVAL mementos e guardado o grafo completo
      *
      * @return o novo memento
      */
     @Override
     public Memento createMemento() {
-        return new MyMemento(this.graph);
+        GraphMemento previous = this.recording;
+        if (previous != null) {
+            previous.stopRecording();
+        }
+        this.recording = this.mementosCreated++ % CHECKPOINT_INTERVAL == 0
+                ? GraphMemento.checkpoint(this.graph, previous) : GraphMemento.delta(previous);
+        this.recording.startRecording(this.graph);
+        return this.recording;
     }
 
     /**
-     * Metodo que permite usar o memento
+     * Metodo que permite usar o memento. O memento anterior volta a registar
+     * as operacoes sobre o grafo
      *
      * @param savedState representa o novo memento
+     * @throws NoMementoException se o estado do memento nao puder ser reposto
      */
     @Override
     public void setMemento(Memento savedState) {
-        ByteArrayInputStream temp = new ByteArrayInputStream(savedState.getState());
-        try {
-            HashMap<User, Vertex<User>> hashMap;
-            hashMap = (HashMap<User, Vertex<User>>) new ObjectInputStream(temp).readObject();
-            graph = new DirectGraph<>(hashMap);
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+        GraphMemento memento = (GraphMemento) savedState;
+        boolean latest = memento == this.recording;
+        if (this.recording != null) {
+            this.recording.stopRecording();
         }
-    }
-
-    public MemoryPersistence getMemoryPersistence() {
-        return memoryPersistence;
-    }
-
-    private static class MyMemento implements Memento {
-        private byte[] state;
+        this.recording = null;
+        memento.restore(this.graph, latest);
 
-        public MyMemento(DirectGraph<User, Relationship> stateToSave) {
-            load(stateToSave);
+        this.recording = memento.getPrevious();
+        if (this.recording != null) {
+            this.recording.startRecording(this.graph);
         }
+    }
 
-        private void load(DirectGraph<User, Relationship> stateToSave) {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutputStream oos;
-            try {
-                oos = new ObjectOutputStream(bos);
-                oos.writeObject(stateToSave.getVertices());
-                oos.flush();
-                oos.close();
-                bos.close();
-                state = bos.toByteArray();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Metodo que altera o tipo de um utilizador, registando a alteracao para undo
+     *
+     * @param user representa o utilizador
+     * @param type representa o novo tipo
+     */
+    public void setUserType(User user, Type type) {
+        if (user.getType() != type && this.recording != null) {
+            this.recording.typeChanged(user, user.getType(), type);
         }
+        user.setType(type);
+    }
 
-        @Override
-        public byte[] getState() {
-            return state;
-        }
+    public MemoryPersistence getMemoryPersistence() {
+        return memoryPersistence;
     }
 }
@@ -1,33 +1,34 @@
 package com.pa.proj2020.adts.graph;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.io.Serializable;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Paths;
 
+/**
+ * Classe que guarda o Logging da social network em ficheiros. Cada registo
+ * do Logging e colocado na fila de um {@link RollingLogWriter}, que o
+ * acrescenta ao ficheiro de log atual numa thread propria
+ */
 public class SocialNetworkLog implements Serializable {
     private static final Logging log = Logging.getInstance();
+    private static final RollingLogWriter writer = new RollingLogWriter(Paths.get("outputFiles"),
+            "LogFile ", 8192, 8L << 20, 60L * 60 * 1000, 1000);
+
+    static {
+        log.setWriter(writer::append);
+        Runtime.getRuntime().addShutdownHook(new Thread(writer::close));
+    }
 
     public static Logging getLog() {
         return log;
     }
 
     /**
-     * Metodo que permite atualizar o Logging
+     * Metodo que permite atualizar o Logging, esperando que os registos ja
+     * criados estejam escritos no ficheiro
      */
     public static void updateLog() {
-        try {
-            new File("outputFiles/").mkdirs();
-            FileWriter fileWriter = new FileWriter("outputFiles/LogFile " +
-                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH-mm-ss")) + ".log");
-            fileWriter.write(log.toString());
-            fileWriter.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        writer.flush();
     }
 
 
-}
\ No newline at end of file
+}
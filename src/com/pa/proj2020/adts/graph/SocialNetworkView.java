@@ -27,12 +27,18 @@ import smartgraph.view.graphview.SmartGraphPanel;
 import smartgraph.view.graphview.SmartStylableNode;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
 public class SocialNetworkView implements Observer {
 
+    /**
+     * Numero de utilizadores e de interesses mostrados nos graficos de top
+     */
+    private static final int TOP_SIZE = 5;
+    private static final int NEIGHBORHOOD_HOPS = 2;
+
     private final Stage stage;
     private final ViewObjectCreator viewObjectCreator = ViewObjectCreator.getInstance();
     private SocialNetwork socialNetwork;
@@ -83,10 +89,12 @@ public class SocialNetworkView implements Observer {
         MenuItem menuStats5 = new MenuItem("Bar chart with the number of relationships of\n " +
                 "the 5 users with the most relationships");
         MenuItem menuStats6 = new MenuItem("Bar chart with the top 5 interest");
+        MenuItem menuStats7 = new MenuItem("Statistic Degrees Of Separation");
 
         menuOptions.getItems().addAll(menuExit, menuUndo, menuAddUser, menuAddIndirectRelationship, menuDijkstra);
         menuOptions1.getItems().addAll(menuExportSerialize, menuImportSerialize, menuExportJSON);
-        menuOptions2.getItems().addAll(menuStats1, menuStats2, menuStats3, menuStats4, menuStats5, menuStats6);
+        menuOptions2.getItems().addAll(menuStats1, menuStats2, menuStats3, menuStats4, menuStats5, menuStats6,
+                menuStats7);
 
         menuExit.setOnAction(e -> Platform.exit());
 
@@ -117,6 +125,8 @@ public class SocialNetworkView implements Observer {
 
         menuStats6.setOnAction(e -> this.addStatTopFiveInterestsStats());
 
+        menuStats7.setOnAction(e -> this.addStatDegreesOfSeparation());
+
         menuBar.getMenus().addAll(menuOptions, menuOptions1, menuOptions2);
     }
 
@@ -211,17 +221,78 @@ public class SocialNetworkView implements Observer {
             graphView.update();
         });
 
+        Button addNeighborhoodButton = new Button("ADD USER AND 2-HOP NEIGHBORHOOD");
+        addNeighborhoodButton.setOnAction(e -> {
+            if (texts.getValue() == null) return;
+            this.caretaker.saveState();
+
+            this.socialNetwork.constructModelIterativeNeighborhood(Integer.parseInt(texts.getValue().split(" ")[0]),
+                    NEIGHBORHOOD_HOPS);
+            texts.getItems().setAll(this.socialNetwork.getUsersNotInserted());
+            texts.getItems().setAll(texts.getItems().sorted());
+        });
+
+        TextField idsField = viewObjectCreator.createTextField("Ids of users (e.g. 1-20, 35)", 230, 230);
+        Button addUsersButton = new Button("ADD USERS");
+        addUsersButton.setOnAction(e -> {
+            List<int[]> ranges = new ArrayList<>();
+            if (!parseIds(idsField.getText(), ranges) || ranges.isEmpty()) return;
+            this.caretaker.saveState();
+
+            this.socialNetwork.constructModelIterativeRanges(ranges);
+            texts.getItems().setAll(this.socialNetwork.getUsersNotInserted());
+            texts.getItems().setAll(texts.getItems().sorted());
+        });
+
         updateButton.setOnAction(e -> this.updateGraphColors());
 
         HBox hBox2 = viewObjectCreator.createHBox(new Insets(10), 10, Pos.CENTER);
         hBox2.getChildren().addAll(addUserButton, updateButton);
 
+        HBox hBox3 = viewObjectCreator.createHBox(new Insets(10), 10, Pos.CENTER);
+        hBox3.getChildren().addAll(idsField, addUsersButton);
+
         VBox center2 = viewObjectCreator.createVBox(new Insets(-10, 12, 15, 12), 15, Pos.CENTER);
-        center2.getChildren().addAll(texts, hBox2);
+        center2.getChildren().addAll(texts, hBox2, addNeighborhoodButton, hBox3);
 
         pane.setCenter(center2);
     }
 
+    /**
+     * Le uma lista de ids separados por virgulas, em que cada elemento e um id
+     * ou um intervalo de ids (por exemplo 1-20). Os intervalos nao sao
+     * expandidos: sao guardados com os seus limites, pela ordem do texto, e um
+     * id isolado e guardado como um intervalo com os dois limites iguais
+     *
+     * @param text   texto com os ids
+     * @param ranges lista onde sao guardados os limites de cada elemento
+     * @return false se o texto nao for valido, por ter um numero invalido ou
+     * um intervalo com o primeiro id maior do que o ultimo
+     */
+    private boolean parseIds(String text, List<int[]> ranges) {
+        try {
+            for (String part : text.split(",")) {
+                String[] bounds = part.trim().split("-");
+                if (bounds.length == 1 && !bounds[0].isEmpty()) {
+                    int id = Integer.parseInt(bounds[0].trim());
+                    ranges.add(new int[]{id, id});
+                } else if (bounds.length == 2) {
+                    int from = Integer.parseInt(bounds[0].trim());
+                    int to = Integer.parseInt(bounds[1].trim());
+                    if (from > to) {
+                        return false;
+                    }
+                    ranges.add(new int[]{from, to});
+                } else if (!part.trim().isEmpty()) {
+                    return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Cria o menu de adicao de relacionamentos indiretos
      */
@@ -242,13 +313,20 @@ public class SocialNetworkView implements Observer {
             graphView.update();
         });
 
+        Button addAllButton = new Button("ADD INDIRECT RELATIONSHIPS OF ALL USERS");
+        addAllButton.setOnAction(e -> {
+            this.socialNetwork.addIndirectRelationships();
+            texts.getItems().clear();
+            graphView.update();
+        });
+
         updateButton.setOnAction(e -> this.updateGraphColors());
 
         HBox hBox2 = viewObjectCreator.createHBox(new Insets(10), 10, Pos.CENTER);
         hBox2.getChildren().addAll(addUserButton, updateButton);
 
         VBox center2 = viewObjectCreator.createVBox(new Insets(-10, 12, 15, 12), 15, Pos.CENTER);
-        center2.getChildren().addAll(texts, hBox2);
+        center2.getChildren().addAll(texts, hBox2, addAllButton);
 
         pane.setCenter(center2);
     }
@@ -289,8 +367,10 @@ public class SocialNetworkView implements Observer {
                 getChildren().remove(getChildren().size() - 1);
             }
             if (user1 != null && user2 != null) {
-                try {
-                    this.socialNetwork.getGraph().minCostPath(user1, user2, path);
+                if (this.socialNetwork.getGraph().minCostPath(user1, user2, path, true) < 0) {
+                    Text text = new Text("There's no path, please try again");
+                    getChildren().add(text);
+                } else {
                     getStylableVertex(user1).setStyleClass("myVertexDijkstra");
                     for (User user : path) {
                         graphView.getStylableVertex(user).setStyleClass("myVertexDijkstra");
@@ -323,10 +403,6 @@ public class SocialNetworkView implements Observer {
                             }
                         }
                     }
-
-                } catch (NullPointerException ex) {
-                    Text text = new Text("There's no path, please try again");
-                    getChildren().add(text);
                 }
             }
 
@@ -356,6 +432,9 @@ public class SocialNetworkView implements Observer {
             this.socialNetwork.initializeData();
         }
 
+        if (graphView != null) {
+            graphView.dispose();
+        }
         graphView = new SmartGraphPanel(this.socialNetwork.getGraph(), new SmartCircularSortedPlacementStrategy());
 
         graphView.setVertexDoubleClickAction(graphVertex ->
@@ -417,6 +496,13 @@ public class SocialNetworkView implements Observer {
         addStat(socialNetwork.interestMostSharedStats());
     }
 
+    /**
+     * Cria o menu das estatisticas dos graus de separacao entre utilizadores
+     */
+    private void addStatDegreesOfSeparation() {
+        addStat(socialNetwork.degreesOfSeparationStats());
+    }
+
     private void addStat(String stat) {
         ListView<String> list = viewObjectCreator.createListViewString(350, 100, stat);
         pane.setCenter(list);
@@ -430,11 +516,9 @@ public class SocialNetworkView implements Observer {
                 "Top Five Users With Most Relationships");
 
         XYChart.Series<String, Integer> series = new XYChart.Series<>();
-        Map<User, Integer> map = new HashMap<>(this.socialNetwork.topFiveUsersWithMostRelationshipsStats());
+        Map<User, Integer> map = this.socialNetwork.topUsersWithMostRelationshipsStats(TOP_SIZE);
 
-        map.keySet().forEach(user -> {
-            series.getData().add(new XYChart.Data<>(user.toString(), map.get(user)));
-        });
+        map.forEach((user, count) -> series.getData().add(new XYChart.Data<>(user.toString(), count)));
 
         bar.getData().add(series);
         pane.setCenter(bar);
@@ -459,13 +543,9 @@ public class SocialNetworkView implements Observer {
         BarChart<String, Integer> bar = createBarChart("Interests", "Users", "Top Five Interests");
 
         XYChart.Series<String, Integer> series = new XYChart.Series<>();
-        Map<Interest, Integer> map = new HashMap<>(this.socialNetwork.topFiveInterestsStats());
+        Map<Interest, Integer> map = this.socialNetwork.topInterestsStats(TOP_SIZE);
 
-        map.keySet().forEach(interest -> {
-            if (interest != null) {
-                series.getData().add(new XYChart.Data<>(interest.getName(), map.get(interest)));
-            }
-        });
+        map.forEach((interest, count) -> series.getData().add(new XYChart.Data<>(interest.getName(), count)));
 
         bar.getData().add(series);
         pane.setCenter(bar);
@@ -504,6 +584,9 @@ public class SocialNetworkView implements Observer {
      * Cria o GraphView
      */
     private void createGraphView() {
+        if (graphView != null) {
+            graphView.dispose();
+        }
         graphView = new SmartGraphPanel(this.socialNetwork.getGraph(), new SmartCircularSortedPlacementStrategy());
 
         this.updateGraphColors();
@@ -569,6 +652,8 @@ public class SocialNetworkView implements Observer {
             this.socialNetwork = socialNetwork;
             this.caretaker = new Caretaker(socialNetwork);
             this.createGraphView();
+        } else if (this.socialNetwork != null && obj == this.socialNetwork.getGraph() && graphView != null) {
+            graphView.update();
         }
     }
 
@@ -1,15 +1,26 @@
 package com.pa.proj2020.adts.graph;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import observer.Observer;
+
+import java.util.*;
+import java.util.function.Function;
 
 /**
- * Classe responsável pela criação de estatisticas
+ * Classe responsável pela criação de estatisticas. Observa o grafo da social
+ * network e mantem atualizados, a cada aresta inserida ou removida, o numero
+ * de relacionamentos diretos de cada utilizador e o numero de partilhas de
+ * cada interesse, ordenados do maior para o menor. Os interesses sao contados
+ * pelo id, porque o mesmo interesse pode chegar em objetos diferentes (por
+ * exemplo os de um snapshot importado e os do indice da social network)
  */
-public class Statistics {
+public class Statistics implements Observer {
     private final Map<User, ArrayList<User>> usersIncluded;
+    private final Map<Vertex<User>, Integer> directRelationships;
+    private final Map<Integer, Integer> interestShares;
+    private final Map<Integer, Interest> interests;
+    private final TreeSet<Vertex<User>> usersRanking;
+    private final TreeSet<Integer> interestsRanking;
+    private DirectGraph<User, Relationship> graph;
 
 
     /**
@@ -17,8 +28,173 @@ public class Statistics {
      */
     public Statistics() {
         usersIncluded = new HashMap<>();
+        directRelationships = new HashMap<>();
+        interestShares = new HashMap<>();
+        interests = new HashMap<>();
+        usersRanking = new TreeSet<>(Comparator.comparing((Vertex<User> userVertex) ->
+                directRelationships.getOrDefault(userVertex, 0)).reversed()
+                .thenComparingInt(userVertex -> userVertex.element().getID()));
+        interestsRanking = new TreeSet<>(Comparator.comparing((Integer idInterest) ->
+                interestShares.getOrDefault(idInterest, 0)).reversed()
+                .thenComparingInt(idInterest -> idInterest));
+    }
+
+
+    /**
+     * Método que passa a observar um grafo, recalculando os contadores a partir
+     * das arestas existentes. Nao faz nada se o grafo ja for o observado
+     *
+     * @param graph representa o grafo utilizado
+     */
+    public void attach(DirectGraph<User, Relationship> graph) {
+        if (this.graph == graph) {
+            return;
+        }
+        if (this.graph != null) {
+            this.graph.removeObservers(this);
+        }
+        this.graph = graph;
+        reset();
+        graph.edges().forEach(edge -> edgeChanged(edge, edge.element(), 1));
+        graph.addObservers(this);
     }
 
+    /**
+     * Método que atualiza os contadores com uma alteracao ao grafo observado
+     *
+     * @param obj alteracao ao grafo
+     */
+    @Override
+    public void update(Object obj) {
+        if (!(obj instanceof GraphEvent)) {
+            return;
+        }
+        GraphEvent<User, Relationship> event = (GraphEvent<User, Relationship>) obj;
+        switch (event.getKind()) {
+            case EDGE_INSERTED:
+                edgeChanged(event.getEdge(), event.getEdgeElement(), 1);
+                break;
+            case EDGE_REMOVED:
+                edgeChanged(event.getEdge(), event.getEdgeElement(), -1);
+                break;
+            case CLEARED:
+                reset();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void reset() {
+        directRelationships.clear();
+        interestShares.clear();
+        interests.clear();
+        usersRanking.clear();
+        interestsRanking.clear();
+    }
+
+    /**
+     * Método que soma ou subtrai uma aresta aos contadores: as arestas que nao
+     * sao relacionamentos indiretos contam para o utilizador inbound e os
+     * interesses da aresta contam como partilhados
+     *
+     * @param edge         aresta inserida ou removida
+     * @param relationship elemento da aresta
+     * @param delta        1 se a aresta foi inserida, -1 se foi removida
+     */
+    private void edgeChanged(Edge<Relationship, User> edge, Relationship relationship, int delta) {
+        if (!(relationship instanceof RelationshipIndirect)) {
+            addToCount(directRelationships, usersRanking, edge.vertices()[1], delta);
+        }
+        if (relationship instanceof RelationshipShared) {
+            ((RelationshipShared) relationship).getInterests()
+                    .forEach(interest -> interestChanged(interest, delta));
+        } else if (relationship instanceof RelationshipIndirect) {
+            ((RelationshipIndirect) relationship).getListOfInterests()
+                    .forEach(interest -> interestChanged(interest, delta));
+        }
+    }
+
+    /**
+     * Método que soma ou subtrai uma partilha ao contador do id de um
+     * interesse, guardando o objeto do interesse enquanto o contador for
+     * positivo
+     */
+    private void interestChanged(Interest interest, int delta) {
+        int idInterest = interest.getId();
+        if (delta > 0) {
+            interests.putIfAbsent(idInterest, interest);
+        }
+        addToCount(interestShares, interestsRanking, idInterest, delta);
+        if (!interestShares.containsKey(idInterest)) {
+            interests.remove(idInterest);
+        }
+    }
+
+    /**
+     * Método que altera o contador de uma chave, retirando-a da ordenacao antes
+     * da alteracao e voltando a inseri-la se o contador continuar positivo
+     */
+    private <T> void addToCount(Map<T, Integer> counts, TreeSet<T> ranking, T key, int delta) {
+        ranking.remove(key);
+        int count = counts.getOrDefault(key, 0) + delta;
+        if (count > 0) {
+            counts.put(key, count);
+            ranking.add(key);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    /**
+     * Método que retorna as primeiras chaves de uma ordenacao com o respetivo contador
+     */
+    private <T, K> Map<K, Integer> top(TreeSet<T> ranking, Map<T, Integer> counts, int k,
+                                       Function<T, K> key) {
+        Map<K, Integer> map = new LinkedHashMap<>();
+        Iterator<T> iterator = ranking.iterator();
+        while (map.size() < k && iterator.hasNext()) {
+            T next = iterator.next();
+            map.put(key.apply(next), counts.get(next));
+        }
+        return map;
+    }
+
+    /**
+     * Método que retorna os k primeiros candidatos segundo um comparador, numa
+     * unica passagem com uma heap limitada a k elementos (O(N log K)). A heap
+     * guarda no topo o pior dos candidatos escolhidos, que e trocado sempre que
+     * aparece um candidato melhor
+     *
+     * @param candidates candidatos a ordenar
+     * @param k          numero maximo de candidatos a retornar
+     * @param comparator ordem dos candidatos, do primeiro para o ultimo
+     * @param <T>        tipo dos candidatos
+     * @return lista com os k primeiros candidatos, por ordem
+     */
+    public static <T> List<T> topK(Iterable<? extends T> candidates, int k, Comparator<? super T> comparator) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.min(k, 1024), comparator.reversed());
+        for (T candidate : candidates) {
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (comparator.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+        List<T> list = new ArrayList<>(heap);
+        list.sort(comparator);
+        return list;
+    }
+
+    private static <K> Map<K, Integer> toMap(List<Map.Entry<K, Integer>> entries) {
+        Map<K, Integer> map = new LinkedHashMap<>();
+        entries.forEach(entry -> map.put(entry.getKey(), entry.getValue()));
+        return map;
+    }
 
     /**
      * Método que permite adicionar um utilizador como key e a sua lista de utilizadores que
@@ -28,13 +204,7 @@ public class Statistics {
      * @param userIncluded representa um value que pretendemos adicionar à lista associada
      */
     public void addUsersIncluded(User user, User userIncluded) {
-        if (!this.usersIncluded.containsKey(user)) {
-            this.usersIncluded.put(user, new ArrayList<>());
-        }
-
-        ArrayList<User> list = new ArrayList<>(this.usersIncluded.get(user));
-        list.add(userIncluded);
-        this.usersIncluded.put(user, list);
+        this.usersIncluded.computeIfAbsent(user, key -> new ArrayList<>()).add(userIncluded);
     }
 
 
@@ -90,21 +260,8 @@ public class Statistics {
     }
 
     private User getUser(DirectGraph<User, Relationship> graph) {
-        User user = null;
-        int edges = 0;
-
-        for (Vertex<User> userVertex : graph.vertices()) {
-            int count = 0;
-
-            count += graph.incidentEdges(userVertex).stream()
-                    .filter(edge -> !(edge.element() instanceof RelationshipIndirect)).count();
-
-            if (count > edges) {
-                edges = count;
-                user = userVertex.element();
-            }
-        }
-        return user;
+        attach(graph);
+        return usersRanking.isEmpty() ? null : usersRanking.first().element();
     }
 
 
@@ -126,28 +283,33 @@ public class Statistics {
         return s;
     }
 
-    private Interest getInterest(DirectGraph<User, Relationship> graph) {
-        Interest interest = null;
-        ArrayList<Interest> interests = new ArrayList<>();
-        int number = 0;
-
-        graph.vertices().stream().flatMap(userVertex -> graph.incidentEdges(userVertex).stream()).forEach(edge -> {
-            if ((edge.element() instanceof RelationshipShared)) {
-                interests.addAll(((RelationshipShared) edge.element()).getInterests());
-            } else if ((edge.element() instanceof RelationshipIndirect)) {
-                interests.addAll(((RelationshipIndirect) edge.element()).getListOfInterests());
-            }
-        });
-
-        for (Interest interestOfList : interests) {
-            int count = 0;
-            count += interests.stream().filter(interestOfList::equals).count();
-            if (count > number) {
-                interest = interestOfList;
-                number = count;
-            }
+    /**
+     * Método que representa a estatistica relativa aos graus de separacao entre
+     * os utilizadores: diametro, distancia media e histograma das distancias
+     *
+     * @param graph representa o grafo utilizado
+     * @return uma string com o diametro, a distancia media e o numero de pares
+     * de utilizadores por distancia
+     */
+    public String degreesOfSeparationStats(DirectGraph<User, Relationship> graph) {
+        StringBuilder s = new StringBuilder("STATISTIC DEGREES OF SEPARATION\n");
+        HopDistances<User> distances = graph.hopDistanceHistogram();
+        long[] histogram = distances.getHistogram();
+
+        s.append("Pairs of users with a path: ").append(distances.getReachablePairs()).append("\n");
+        s.append("Diameter: ").append(distances.getDiameter()).append("\n");
+        s.append("Average path length: ").append(String.format("%.2f", distances.getAveragePathLength()))
+                .append("\n");
+        for (int i = 1; i < histogram.length; i++) {
+            s.append("Distance ").append(i).append(": ").append(histogram[i]).append(" pairs\n");
         }
-        return interest;
+
+        return s.toString();
+    }
+
+    private Interest getInterest(DirectGraph<User, Relationship> graph) {
+        attach(graph);
+        return interestsRanking.isEmpty() ? null : interests.get(interestsRanking.first());
     }
 
 
@@ -159,26 +321,38 @@ public class Statistics {
      * @return um hashmap com os 5 utilizadores com mais relationamentos
      */
     public Map<User, Integer> topFiveUsersWithMostRelationshipsStats(DirectGraph<User, Relationship> graph) {
-        Map<User, Integer> map = new HashMap<>();
-        List<Vertex<User>> usersList = new ArrayList<>(graph.vertices());
-        Vertex<User>[] user = new Vertex[5];
-        int edges = 0;
-
-        for (int i = 0; i < 5; i++) {
-            for (Vertex<User> userVertex : usersList) {
-                int count = 0;
-                count += graph.incidentEdges(userVertex).stream()
-                        .filter(edge -> !(edge.element() instanceof RelationshipIndirect)).count();
-                if (count > edges) {
-                    edges = count;
-                    user[i] = userVertex;
-                }
-            }
-            map.put(user[i].element(), edges);
-            usersList.remove(user[i]);
-            edges = 0;
-        }
-        return map;
+        return topUsersWithMostRelationshipsStats(graph, 5);
+    }
+
+    /**
+     * Método que representa a estatistica relativa ao número de relacionamentos dos
+     * k utilizadores com mais relacionamentos
+     *
+     * @param graph representa o grafo utilizado
+     * @param k     numero de utilizadores pretendido
+     * @return um map ordenado com ate k utilizadores com mais relacionamentos
+     */
+    public Map<User, Integer> topUsersWithMostRelationshipsStats(DirectGraph<User, Relationship> graph, int k) {
+        attach(graph);
+        return top(usersRanking, directRelationships, k, Vertex::element);
+    }
+
+    /**
+     * Método que retorna os k primeiros utilizadores com relacionamentos diretos
+     * segundo um comparador dos pares (utilizador, numero de relacionamentos)
+     *
+     * @param graph      representa o grafo utilizado
+     * @param k          numero de utilizadores pretendido
+     * @param comparator ordem dos pares, do primeiro para o ultimo
+     * @return um map ordenado com ate k utilizadores
+     */
+    public Map<User, Integer> topUsersStats(DirectGraph<User, Relationship> graph, int k,
+                                            Comparator<? super Map.Entry<User, Integer>> comparator) {
+        attach(graph);
+        List<Map.Entry<User, Integer>> entries = new ArrayList<>(directRelationships.size());
+        directRelationships.forEach((userVertex, count) ->
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(userVertex.element(), count)));
+        return toMap(topK(entries, k, comparator));
     }
 
 
@@ -189,40 +363,36 @@ public class Statistics {
      * @return um hashmap com os 5 intesses mais partilhados
      */
     public Map<Interest, Integer> topFiveInterestsStats(DirectGraph<User, Relationship> graph) {
-        Map<Interest, Integer> map = new HashMap<>();
-        List<Interest> interests = new ArrayList<>();
-        Interest[] interest = new Interest[5];
-        int number = 0;
-
-        graph.vertices().stream().flatMap(userVertex -> graph.incidentEdges(userVertex).stream()).forEach(edge -> {
-            if ((edge.element() instanceof RelationshipShared)) {
-                interests.addAll(((RelationshipShared) edge.element()).getInterests());
-            } else if ((edge.element() instanceof RelationshipIndirect)) {
-                interests.addAll(((RelationshipIndirect) edge.element()).getListOfInterests());
-            }
-        });
-
-        for (int i = 0; i < 5; i++) {
-            for (Interest interestOfList : interests) {
-                int count = 0;
-                count += interests.stream().filter(interestOfList::equals).count();
-                if (count > number) {
-                    interest[i] = interestOfList;
-                    number = count;
-                }
-            }
+        return topInterestsStats(graph, 5);
+    }
 
-            map.put(interest[i], number);
-            List<Interest> tempInterest = new ArrayList<>();
-            for (Interest interest1 : interests) {
-                if (interest1.getId() == interest[i].getId()) {
-                    tempInterest.add(interest1);
-                }
-            }
-            interests.removeAll(tempInterest);
-            number = 0;
-        }
+    /**
+     * Método que representa a estatistica relativa aos k interesses mais partilhados
+     *
+     * @param graph representa o grafo utilizado
+     * @param k     numero de interesses pretendido
+     * @return um map ordenado com ate k interesses mais partilhados
+     */
+    public Map<Interest, Integer> topInterestsStats(DirectGraph<User, Relationship> graph, int k) {
+        attach(graph);
+        return top(interestsRanking, interestShares, k, interests::get);
+    }
 
-        return map;
+    /**
+     * Método que retorna os k primeiros interesses partilhados segundo um
+     * comparador dos pares (interesse, numero de partilhas)
+     *
+     * @param graph      representa o grafo utilizado
+     * @param k          numero de interesses pretendido
+     * @param comparator ordem dos pares, do primeiro para o ultimo
+     * @return um map ordenado com ate k interesses
+     */
+    public Map<Interest, Integer> topInterestsStats(DirectGraph<User, Relationship> graph, int k,
+                                                    Comparator<? super Map.Entry<Interest, Integer>> comparator) {
+        attach(graph);
+        List<Map.Entry<Interest, Integer>> entries = new ArrayList<>(interestShares.size());
+        interestShares.forEach((idInterest, count) ->
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(interests.get(idInterest), count)));
+        return toMap(topK(entries, k, comparator));
     }
 }
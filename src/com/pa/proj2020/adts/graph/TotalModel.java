@@ -1,5 +1,8 @@
 package com.pa.proj2020.adts.graph;
 
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
 public class TotalModel implements Model {
     private final SocialNetwork socialNetwork;
 
@@ -8,21 +11,45 @@ public class TotalModel implements Model {
     }
 
     /**
-     * Método que constroi o algoritmo Total
+     * Método que constroi o algoritmo Total. Os relacionamentos de todos os
+     * pares do ficheiro relationships.csv sao criados em paralelo, cada um na
+     * posicao do par na tabela, e as arestas sao depois inseridas de uma so
+     * vez pela ordem da tabela, pelo que o grafo e igual ao construido aresta
+     * a aresta
      *
      * @return grafo com algoritmo total
      */
     @Override
     public DirectGraph<User, Relationship> modelConstructor() {
-        socialNetwork.getUsers().values().forEach(user -> socialNetwork.getGraph().insertVertex(user));
+        DirectGraph<User, Relationship> graph = socialNetwork.getGraph();
+        HashMap<Integer, User> users = socialNetwork.getUsers();
+        users.values().forEach(graph::insertVertex);
+
+        CsvTable relationships = socialNetwork.getRelationships();
+        int[] offsets = new int[relationships.size() + 1];
+        for (int row = 0; row < relationships.size(); row++) {
+            offsets[row + 1] = offsets[row] + relationships.rowLength(row);
+        }
+        User[] sources = new User[offsets[relationships.size()]];
+        User[] targets = new User[sources.length];
+        Relationship[] elements = new Relationship[sources.length];
 
-        socialNetwork.getRelationships().keySet().forEach(id -> {
-            socialNetwork.getRelationships().get(id)
-                    .forEach(id2 -> socialNetwork.insertEdge(socialNetwork.getUsers()
-                            .get(id), socialNetwork.getUsers().get(Integer.parseInt(id2))));
+        socialNetwork.getInterestIndex();
+        IntStream.range(0, relationships.size()).parallel().forEach(row -> {
+            User user = users.get(relationships.getKey(row));
+            for (int i = 0; i < relationships.rowLength(row); i++) {
+                User friend = users.get(relationships.getValue(row, i));
+                if (user != null && friend != null) {
+                    int k = offsets[row] + i;
+                    sources[k] = user;
+                    targets[k] = friend;
+                    elements[k] = socialNetwork.createRelationship(user, friend, false);
+                }
+            }
         });
 
-        return this.socialNetwork.getGraph();
+        graph.insertEdges(sources, targets, elements);
+        return graph;
     }
 
 }
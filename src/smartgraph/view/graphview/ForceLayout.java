@@ -0,0 +1,492 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 brunomnsilva.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package smartgraph.view.graphview;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Force-directed layout computations used by {@link SmartGraphPanel}, over
+ * primitive arrays indexed by vertex.
+ * <br>
+ * Repulsion between all pairs of vertices is approximated with a Barnes-Hut
+ * quadtree: a cell that is far enough from a vertex, i.e., whose size divided
+ * by the distance to its center of mass is below <code>theta</code>, acts on
+ * it as a single body with the mass of all its vertices. A <code>theta</code>
+ * of zero computes the exact all-pairs forces. Attraction is only computed
+ * between adjacent vertices.
+ * <br>
+ * The force functions are the ones of {@link UtilitiesPoint2D}. The arrays
+ * are only reallocated when the number of vertices (or of quadtree cells)
+ * grows, so each iteration runs in O(V log V + E) without allocations. In
+ * large graphs the forces of the vertices are computed in parallel, in the
+ * common {@link ForkJoinPool}, once the quadtree is built.
+ * <br>
+ * The movement of each vertex in an iteration is limited by a temperature,
+ * which starts at a tenth of the largest side of the plot. It cools down
+ * by the cooling factor whenever the energy of the system (the sum of the
+ * squared forces) does not decrease, and warms up again after five
+ * iterations in a row that decrease it. The layout converges once no vertex
+ * moves more than the convergence threshold in an iteration.
+ *
+ * @see SmartGraphPanel
+ */
+class ForceLayout {
+
+    /* Cells at this depth hold all the vertices that fall in them */
+    private static final int MAX_DEPTH = 32;
+
+    private static final int EMPTY = -1;
+    private static final int INTERNAL = -2;
+    private static final int BUCKET = -3;
+
+    private static final int PARALLEL_THRESHOLD = 2048;
+    private static final int VERTICES_PER_TASK = 512;
+    private static final ThreadLocal<int[]> STACKS = ThreadLocal.withInitial(() -> new int[4 * (MAX_DEPTH + 2)]);
+
+    private static final double INITIAL_TEMPERATURE = 0.1;
+    private static final int PROGRESS_ITERATIONS = 5;
+
+    private final double repulsionForce;
+    private final double attractionForce;
+    private final double attractionScale;
+    private double theta;
+    private double coolingFactor = 0.95;
+    private double convergenceThreshold = 0.5;
+
+    /* Cooling; a negative temperature is set on the next iteration */
+    private double temperature = -1;
+    private double maxTemperature;
+    private double energy = Double.POSITIVE_INFINITY;
+    private int progress;
+    private boolean converged;
+
+    /* Vertices */
+    private int size;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] forceX = new double[0];
+    private double[] forceY = new double[0];
+    private int[] adjacencyOffsets = new int[1];
+    private int[] adjacencyTargets = new int[0];
+
+    /* Quadtree cells; the four children of a cell are stored consecutively */
+    private int cellCount;
+    private int[] cellBody = new int[0];
+    private int[] cellChild = new int[0];
+    private double[] cellMass = new double[0];
+    private double[] cellMassX = new double[0];
+    private double[] cellMassY = new double[0];
+    private double[] cellCenterX = new double[0];
+    private double[] cellCenterY = new double[0];
+    private double[] cellHalf = new double[0];
+
+    /**
+     * Creates an empty layout.
+     *
+     * @param repulsionForce  repulsion force between every two vertices
+     * @param attractionForce attraction force between adjacent vertices
+     * @param attractionScale attraction scale between adjacent vertices
+     * @param theta           Barnes-Hut approximation threshold
+     */
+    ForceLayout(double repulsionForce, double attractionForce, double attractionScale, double theta) {
+        this.repulsionForce = repulsionForce;
+        this.attractionForce = attractionForce;
+        this.attractionScale = attractionScale;
+        this.theta = theta;
+    }
+
+    /**
+     * Sets the Barnes-Hut approximation threshold. Higher values are faster
+     * and less accurate; zero computes the exact forces.
+     *
+     * @param theta approximation threshold
+     */
+    void setTheta(double theta) {
+        this.theta = theta;
+    }
+
+    /**
+     * Sets how the temperature cools down and when the layout converges.
+     *
+     * @param coolingFactor        factor applied to the temperature, between
+     *                             zero and one
+     * @param convergenceThreshold largest movement of a vertex, in pixels, in
+     *                             an iteration of a converged layout
+     */
+    void setCooling(double coolingFactor, double convergenceThreshold) {
+        this.coolingFactor = coolingFactor;
+        this.convergenceThreshold = convergenceThreshold;
+    }
+
+    /**
+     * Restores the initial temperature, so the vertices can move freely again,
+     * e.g., after the graph changed or a vertex was dragged.
+     */
+    void heat() {
+        temperature = -1;
+        energy = Double.POSITIVE_INFINITY;
+        progress = 0;
+        converged = false;
+    }
+
+    /**
+     * Checks whether no vertex moved more than the convergence threshold in
+     * the last iteration.
+     *
+     * @return true if the layout converged; false, otherwise
+     */
+    boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Returns the energy of the system in the last iteration, i.e., the sum of
+     * the squared forces of the vertices.
+     *
+     * @return energy of the system
+     */
+    double getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Sets the vertices and their adjacencies. The adjacent vertices of vertex
+     * <code>i</code> are <code>targets[offsets[i]]</code> up to
+     * <code>targets[offsets[i + 1] - 1]</code>.
+     *
+     * @param count   number of vertices
+     * @param offsets position in targets of the adjacencies of each vertex,
+     *                with an extra position at the end
+     * @param targets adjacent vertices of all vertices
+     */
+    void setGraph(int count, int[] offsets, int[] targets) {
+        if (x.length < count) {
+            x = new double[count];
+            y = new double[count];
+            forceX = new double[count];
+            forceY = new double[count];
+        }
+        this.size = count;
+        this.adjacencyOffsets = offsets;
+        this.adjacencyTargets = targets;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void setPosition(int i, double px, double py) {
+        x[i] = px;
+        y[i] = py;
+    }
+
+    double getForceX(int i) {
+        return forceX[i];
+    }
+
+    double getForceY(int i) {
+        return forceY[i];
+    }
+
+    double getX(int i) {
+        return x[i];
+    }
+
+    double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Computes the force applied to every vertex at the current positions.
+     */
+    void computeForces() {
+        if (size == 0) {
+            return;
+        }
+        buildTree();
+        if (size >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            ForkJoinPool.commonPool().invoke(new ForceTask(0, size));
+        } else {
+            computeForces(0, size);
+        }
+    }
+
+    /**
+     * Computes the forces at the current positions and moves every vertex
+     * accordingly, at most by the temperature, keeping its center inside the
+     * given bounds as {@link SmartGraphVertexNode#moveFromForces()} does.
+     * Then cools the temperature down.
+     *
+     * @param width  width of the plot
+     * @param height height of the plot
+     * @param radius radius of the vertices
+     */
+    void step(double width, double height, double radius) {
+        computeForces();
+        if (temperature < 0) {
+            maxTemperature = INITIAL_TEMPERATURE * Math.max(width, height);
+            temperature = maxTemperature;
+        }
+
+        double stepEnergy = 0;
+        double largestMove = 0;
+        for (int i = 0; i < size; i++) {
+            double fx = forceX[i];
+            double fy = forceY[i];
+            double squared = fx * fx + fy * fy;
+            stepEnergy += squared;
+            if (squared > temperature * temperature) {
+                double scale = temperature / Math.sqrt(squared);
+                fx *= scale;
+                fy *= scale;
+            }
+            double px = bound(x[i] + fx, radius, width - radius);
+            double py = bound(y[i] + fy, radius, height - radius);
+            largestMove = Math.max(largestMove, Math.max(Math.abs(px - x[i]), Math.abs(py - y[i])));
+            x[i] = px;
+            y[i] = py;
+        }
+
+        cool(stepEnergy);
+        converged = largestMove < convergenceThreshold;
+    }
+
+    /**
+     * Adaptive cooling: the temperature goes down while the energy does not
+     * decrease and goes up after a few iterations that decrease it.
+     */
+    private void cool(double stepEnergy) {
+        if (stepEnergy < energy) {
+            progress++;
+            if (progress >= PROGRESS_ITERATIONS) {
+                progress = 0;
+                temperature = Math.min(temperature / coolingFactor, maxTemperature);
+            }
+        } else {
+            progress = 0;
+            temperature *= coolingFactor;
+        }
+        energy = stepEnergy;
+    }
+
+    private static double bound(double value, double min, double max) {
+        if (value < min) {
+            return min;
+        } else if (value > max) {
+            return max;
+        }
+        return value;
+    }
+
+    private void computeForces(int from, int to) {
+        int[] stack = STACKS.get();
+        for (int i = from; i < to; i++) {
+            forceX[i] = 0;
+            forceY[i] = 0;
+            addRepulsion(i, stack);
+            addAttraction(i);
+        }
+    }
+
+    /**
+     * Computes the forces of a range of vertices, splitting it while it has
+     * more than VERTICES_PER_TASK vertices.
+     */
+    private class ForceTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        private ForceTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > VERTICES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ForceTask(from, middle), new ForceTask(middle, to));
+            } else {
+                computeForces(from, to);
+            }
+        }
+    }
+
+    private void addAttraction(int i) {
+        for (int k = adjacencyOffsets[i]; k < adjacencyOffsets[i + 1]; k++) {
+            int j = adjacencyTargets[k];
+            double dx = x[j] - x[i];
+            double dy = y[j] - y[i];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance > 0) {
+                double factor = UtilitiesPoint2D.attractiveFunction(distance, size,
+                        attractionForce, attractionScale) / distance;
+                forceX[i] += dx * factor;
+                forceY[i] += dy * factor;
+            }
+        }
+    }
+
+    private void addRepulsion(int i, int[] stack) {
+        double px = x[i];
+        double py = y[i];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int cell = stack[--top];
+            int body = cellBody[cell];
+            if (body == EMPTY || body == i) {
+                continue;
+            }
+            double mass = cellMass[cell];
+            double mx = cellMassX[cell];
+            double my = cellMassY[cell];
+            if (body == BUCKET && contains(cell, px, py)) {
+                //remove this vertex from the bucket
+                mx = (mx * mass - px) / (mass - 1);
+                my = (my * mass - py) / (mass - 1);
+                mass--;
+            }
+            double dx = mx - px;
+            double dy = my - py;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+
+            if (body == INTERNAL && (2 * cellHalf[cell] >= theta * distance || contains(cell, px, py))) {
+                int child = cellChild[cell];
+                stack[top++] = child;
+                stack[top++] = child + 1;
+                stack[top++] = child + 2;
+                stack[top++] = child + 3;
+            } else if (distance > 0 && mass > 0) {
+                double factor = -UtilitiesPoint2D.repellingFunction(distance, repulsionForce) * mass / distance;
+                forceX[i] += dx * factor;
+                forceY[i] += dy * factor;
+            }
+        }
+    }
+
+    private boolean contains(int cell, double px, double py) {
+        double half = cellHalf[cell];
+        return px >= cellCenterX[cell] - half && px <= cellCenterX[cell] + half
+                && py >= cellCenterY[cell] - half && py <= cellCenterY[cell] + half;
+    }
+
+    /**
+     * Builds the quadtree of the current positions, with the mass and center
+     * of mass of each cell.
+     */
+    private void buildTree() {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+
+        cellCount = 0;
+        int root = newCell((minX + maxX) / 2, (minY + maxY) / 2, Math.max(maxX - minX, maxY - minY) / 2 + 1);
+        for (int i = 0; i < size; i++) {
+            insert(root, i);
+        }
+    }
+
+    private void insert(int root, int i) {
+        int cell = root;
+        for (int depth = 0; ; depth++) {
+            int body = cellBody[cell];
+            if (body == EMPTY) {
+                cellBody[cell] = i;
+                cellMass[cell] = 1;
+                cellMassX[cell] = x[i];
+                cellMassY[cell] = y[i];
+                return;
+            }
+            if (body >= 0) {
+                if (depth < MAX_DEPTH) {
+                    split(cell);
+                    int child = cellChild[cell] + quadrant(cell, x[body], y[body]);
+                    cellBody[child] = body;
+                    cellMass[child] = 1;
+                    cellMassX[child] = x[body];
+                    cellMassY[child] = y[body];
+                    cellBody[cell] = INTERNAL;
+                } else {
+                    cellBody[cell] = BUCKET;
+                }
+            }
+
+            double mass = cellMass[cell];
+            cellMassX[cell] = (cellMassX[cell] * mass + x[i]) / (mass + 1);
+            cellMassY[cell] = (cellMassY[cell] * mass + y[i]) / (mass + 1);
+            cellMass[cell] = mass + 1;
+            if (cellBody[cell] == BUCKET) {
+                return;
+            }
+            cell = cellChild[cell] + quadrant(cell, x[i], y[i]);
+        }
+    }
+
+    private int quadrant(int cell, double px, double py) {
+        return (px < cellCenterX[cell] ? 0 : 1) + (py < cellCenterY[cell] ? 0 : 2);
+    }
+
+    private void split(int cell) {
+        double half = cellHalf[cell] / 2;
+        double cx = cellCenterX[cell];
+        double cy = cellCenterY[cell];
+        int first = newCell(cx - half, cy - half, half);
+        newCell(cx + half, cy - half, half);
+        newCell(cx - half, cy + half, half);
+        newCell(cx + half, cy + half, half);
+        cellChild[cell] = first;
+    }
+
+    private int newCell(double cx, double cy, double half) {
+        if (cellCount == cellBody.length) {
+            int capacity = Math.max(64, cellBody.length * 2);
+            cellBody = Arrays.copyOf(cellBody, capacity);
+            cellChild = Arrays.copyOf(cellChild, capacity);
+            cellMass = Arrays.copyOf(cellMass, capacity);
+            cellMassX = Arrays.copyOf(cellMassX, capacity);
+            cellMassY = Arrays.copyOf(cellMassY, capacity);
+            cellCenterX = Arrays.copyOf(cellCenterX, capacity);
+            cellCenterY = Arrays.copyOf(cellCenterY, capacity);
+            cellHalf = Arrays.copyOf(cellHalf, capacity);
+        }
+        int cell = cellCount++;
+        cellBody[cell] = EMPTY;
+        cellMass[cell] = 0;
+        cellMassX[cell] = 0;
+        cellMassY[cell] = 0;
+        cellCenterX[cell] = cx;
+        cellCenterY[cell] = cy;
+        cellHalf[cell] = half;
+        return cell;
+    }
+}
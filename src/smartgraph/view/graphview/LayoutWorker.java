@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2019 brunomnsilva.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package smartgraph.view.graphview;
+
+import java.util.Arrays;
+
+/**
+ * Runs the iterations of a {@link ForceLayout} in a background thread, so
+ * the force computations never block the JavaFX application thread.
+ * <br>
+ * The worker owns the positions of the vertices. After each iteration it
+ * writes them to the back buffer and swaps it with the front buffer, which
+ * the JavaFX thread copies with {@link #readPositions(double[], double[])}.
+ * The worker only starts a new iteration after the previous snapshot was
+ * read, so the layout advances at most one iteration per displayed frame,
+ * as when it ran inside the animation timer, but a slow iteration only
+ * delays the movement of the vertices and never the frame.
+ * <br>
+ * Once the layout converges the worker stops iterating until the graph
+ * changes, a vertex is pinned or the worker is resumed, which restore the
+ * initial temperature of the layout.
+ * <br>
+ * Every method, except the ones used by the worker thread, is meant to be
+ * called from the JavaFX thread.
+ *
+ * @see SmartGraphPanel
+ */
+class LayoutWorker {
+
+    private final ForceLayout layout;
+    private final Object lock = new Object();
+    private final Thread thread;
+
+    /* Guarded by lock */
+    private boolean running;
+    private boolean closed;
+    private boolean converged;
+    private boolean heat;
+    private boolean snapshotRead = true;
+    private int version;
+    private Graph pendingGraph;
+    private double width;
+    private double height;
+    private double radius;
+    private double theta;
+    private double coolingFactor;
+    private double convergenceThreshold;
+    private int pinnedCount;
+    private int[] pinnedVertices = new int[0];
+    private double[] pinnedX = new double[0];
+    private double[] pinnedY = new double[0];
+    private double[] frontX = new double[0];
+    private double[] frontY = new double[0];
+    private int frontSize;
+    private int frontVersion = -1;
+
+    /* Only used by the worker thread */
+    private int layoutVersion = -1;
+    private double[] backX = new double[0];
+    private double[] backY = new double[0];
+
+    /**
+     * Vertices, adjacencies and initial positions of a graph to lay out.
+     */
+    private static class Graph {
+
+        private final int version;
+        private final int size;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] x;
+        private final double[] y;
+
+        private Graph(int version, int size, int[] offsets, int[] targets, double[] x, double[] y) {
+            this.version = version;
+            this.size = size;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * Creates the worker and starts its thread, initially paused.
+     *
+     * @param layout               layout computations, only used by the
+     *                             worker thread from now on
+     * @param theta                Barnes-Hut approximation threshold of the
+     *                             layout
+     * @param coolingFactor        factor applied to the temperature of the
+     *                             layout
+     * @param convergenceThreshold largest movement of a vertex in an
+     *                             iteration of a converged layout
+     */
+    LayoutWorker(ForceLayout layout, double theta, double coolingFactor, double convergenceThreshold) {
+        this.layout = layout;
+        this.theta = theta;
+        this.coolingFactor = coolingFactor;
+        this.convergenceThreshold = convergenceThreshold;
+        this.thread = new Thread(this::run, "smartgraph-layout");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Replaces the graph being laid out. Snapshots of the previous graph are
+     * no longer returned.
+     *
+     * @param size    number of vertices
+     * @param offsets position in targets of the adjacencies of each vertex,
+     *                with an extra position at the end
+     * @param targets adjacent vertices of all vertices
+     * @param x       current x coordinates of the vertices
+     * @param y       current y coordinates of the vertices
+     */
+    void setGraph(int size, int[] offsets, int[] targets, double[] x, double[] y) {
+        synchronized (lock) {
+            version++;
+            pendingGraph = new Graph(version, size, offsets, targets, x, y);
+            pinnedCount = 0;
+            converged = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets the bounds where the centers of the vertices must stay.
+     *
+     * @param width  width of the plot
+     * @param height height of the plot
+     * @param radius radius of the vertices
+     */
+    void setBounds(double width, double height, double radius) {
+        synchronized (lock) {
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+        }
+    }
+
+    /**
+     * Moves a vertex to the given position before the next iteration, e.g.,
+     * while it is dragged by the user.
+     *
+     * @param i  vertex
+     * @param px x coordinate
+     * @param py y coordinate
+     */
+    void pin(int i, double px, double py) {
+        synchronized (lock) {
+            if (pinnedCount == pinnedVertices.length) {
+                int capacity = Math.max(8, pinnedCount * 2);
+                pinnedVertices = Arrays.copyOf(pinnedVertices, capacity);
+                pinnedX = Arrays.copyOf(pinnedX, capacity);
+                pinnedY = Arrays.copyOf(pinnedY, capacity);
+            }
+            pinnedVertices[pinnedCount] = i;
+            pinnedX[pinnedCount] = px;
+            pinnedY[pinnedCount] = py;
+            pinnedCount++;
+            heat = true;
+            converged = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets the Barnes-Hut approximation threshold of the layout.
+     *
+     * @param theta approximation threshold
+     */
+    void setTheta(double theta) {
+        synchronized (lock) {
+            this.theta = theta;
+        }
+    }
+
+    /**
+     * Resumes or pauses the iterations.
+     *
+     * @param value true to run the iterations
+     */
+    void setRunning(boolean value) {
+        synchronized (lock) {
+            running = value;
+            if (value) {
+                heat = true;
+                converged = false;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the worker thread.
+     */
+    void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets how the temperature of the layout cools down and when it converges.
+     *
+     * @param coolingFactor        factor applied to the temperature
+     * @param convergenceThreshold largest movement of a vertex in an
+     *                             iteration of a converged layout
+     */
+    void setCooling(double coolingFactor, double convergenceThreshold) {
+        synchronized (lock) {
+            this.coolingFactor = coolingFactor;
+            this.convergenceThreshold = convergenceThreshold;
+        }
+    }
+
+    /**
+     * Checks whether the layout converged and its last positions were
+     * already read, so there is nothing left to display until the worker is
+     * woken up again.
+     *
+     * @return true if the layout is settled; false, otherwise
+     */
+    boolean isSettled() {
+        synchronized (lock) {
+            return converged && snapshotRead && pendingGraph == null && pinnedCount == 0;
+        }
+    }
+
+    /**
+     * Copies the positions of the latest iteration, if it was not read yet
+     * and is of the current graph.
+     *
+     * @param x array where the x coordinates are copied to
+     * @param y array where the y coordinates are copied to
+     * @return the number of vertices copied, or -1 if there is no new snapshot
+     */
+    int readPositions(double[] x, double[] y) {
+        synchronized (lock) {
+            if (snapshotRead) {
+                return -1;
+            }
+            snapshotRead = true;
+            lock.notifyAll();
+            if (frontVersion != version) {
+                return -1;
+            }
+            System.arraycopy(frontX, 0, x, 0, frontSize);
+            System.arraycopy(frontY, 0, y, 0, frontSize);
+            return frontSize;
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                double stepWidth, stepHeight, stepRadius;
+                synchronized (lock) {
+                    while (!closed && (pendingGraph == null && (!running || !snapshotRead || layoutVersion < 0 || converged))) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    if (pendingGraph != null) {
+                        Graph graph = pendingGraph;
+                        pendingGraph = null;
+                        layout.setGraph(graph.size, graph.offsets, graph.targets);
+                        for (int i = 0; i < graph.size; i++) {
+                            layout.setPosition(i, graph.x[i], graph.y[i]);
+                        }
+                        layout.heat();
+                        layoutVersion = graph.version;
+                        continue;
+                    }
+                    for (int k = 0; k < pinnedCount; k++) {
+                        if (pinnedVertices[k] < layout.size()) {
+                            layout.setPosition(pinnedVertices[k], pinnedX[k], pinnedY[k]);
+                        }
+                    }
+                    pinnedCount = 0;
+                    if (heat) {
+                        layout.heat();
+                        heat = false;
+                    }
+                    layout.setTheta(theta);
+                    layout.setCooling(coolingFactor, convergenceThreshold);
+                    stepWidth = width;
+                    stepHeight = height;
+                    stepRadius = radius;
+                }
+
+                layout.step(stepWidth, stepHeight, stepRadius);
+                boolean stepConverged = layout.isConverged();
+                int size = layout.size();
+                if (backX.length < size) {
+                    backX = new double[size];
+                    backY = new double[size];
+                }
+                for (int i = 0; i < size; i++) {
+                    backX[i] = layout.getX(i);
+                    backY[i] = layout.getY(i);
+                }
+
+                synchronized (lock) {
+                    double[] swapX = frontX;
+                    double[] swapY = frontY;
+                    frontX = backX;
+                    frontY = backY;
+                    backX = swapX;
+                    backY = swapY;
+                    frontSize = size;
+                    frontVersion = layoutVersion;
+                    snapshotRead = false;
+                    converged = stepConverged && !heat && pendingGraph == null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -26,9 +26,11 @@ package smartgraph.view.graphview;
 
 import java.io.File;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -55,11 +57,14 @@ import com.pa.proj2020.adts.graph.Graph;
 import com.pa.proj2020.adts.graph.Digraph;
 import com.pa.proj2020.adts.graph.Vertex;
 import com.pa.proj2020.adts.graph.Edge;
+import com.pa.proj2020.adts.graph.GraphEvent;
 
 import java.net.URI;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import observer.Observable;
+import observer.Observer;
 
 /**
  * JavaFX {@link Pane} that is capable of plotting a {@link Graph} or {@link Digraph}.
@@ -93,8 +98,19 @@ public class SmartGraphPanel<V, E> extends Pane {
     private final Map<Vertex<V>, SmartGraphVertexNode<V>> vertexNodes;
     private final Map<Edge<E, V>, SmartGraphEdgeBase> edgeNodes;
     private final Map<Tuple<SmartGraphVertexNode>, Integer> placedEdges = new HashMap<>();
+    private final Map<Tuple<Vertex<V>>, Integer> edgeCounts = new HashMap<>();
     private boolean initialized = false;
     private final boolean edgesWithArrows;
+
+    /*
+    CHANGES OF THE UNDERLYING GRAPH SINCE THE LAST UPDATE
+     */
+    private final Object changesLock = new Object();
+    private final boolean changesTracked;
+    private final Observer graphObserver = this::graphChanged;
+    private boolean rescanPending = true;
+    private Map<Vertex<V>, Boolean> vertexChanges = new LinkedHashMap<>();
+    private Map<Edge<E, V>, Boolean> edgeChanges = new LinkedHashMap<>();
     /*
     INTERACTION WITH VERTICES AND EDGES
      */
@@ -106,9 +122,12 @@ public class SmartGraphPanel<V, E> extends Pane {
      */
     public final BooleanProperty automaticLayoutProperty;
     private AnimationTimer timer;
-    private final double repulsionForce;
-    private final double attractionForce;
-    private final double attractionScale;
+    private final LayoutWorker layoutWorker;
+    private final List<SmartGraphVertexNode<V>> layoutNodes = new ArrayList<>();
+    private double[] layoutX = new double[0];
+    private double[] layoutY = new double[0];
+    private boolean layoutOutdated = true;
+    private boolean layoutSuspended = false;
 
     /**
      * Constructs a visualization of the graph referenced by
@@ -184,13 +203,24 @@ public class SmartGraphPanel<V, E> extends Pane {
 
         this.edgesWithArrows = this.graphProperties.getUseEdgeArrow();
 
-        this.repulsionForce = this.graphProperties.getRepulsionForce();
-        this.attractionForce = this.graphProperties.getAttractionForce();
-        this.attractionScale = this.graphProperties.getAttractionScale();
+        this.layoutWorker = new LayoutWorker(new ForceLayout(this.graphProperties.getRepulsionForce(),
+                this.graphProperties.getAttractionForce(),
+                this.graphProperties.getAttractionScale(),
+                this.graphProperties.getBarnesHutTheta()),
+                this.graphProperties.getBarnesHutTheta(),
+                this.graphProperties.getCoolingFactor(),
+                this.graphProperties.getConvergenceThreshold());
 
         vertexNodes = new HashMap<>();
         edgeNodes = new HashMap<>(); 
 
+        //observable graphs report their changes, so updates only process them
+        this.changesTracked = theGraph instanceof Observable;
+        if (this.changesTracked) {
+            this.rescanPending = false;
+            ((Observable) theGraph).addObservers(graphObserver);
+        }
+
         //set stylesheet and class
         loadStylesheet(cssFile);
 
@@ -214,17 +244,34 @@ public class SmartGraphPanel<V, E> extends Pane {
             } else {
                 timer.stop();
             }
+            layoutSuspended = false;
+            layoutWorker.setRunning(newValue);
         });
+
+        //dragging a vertex wakes up a stable layout
+        addEventFilter(MouseEvent.MOUSE_DRAGGED, event -> resumeLayout());
                 
     }
 
     private synchronized void runLayoutIteration() {
-        for (int i = 0; i < 20; i++) {
-            resetForces();
-            computeForces();
-            updateForces();
+        submitLayoutState();
+        applyLayoutPositions();
+        if (layoutWorker.isSettled()) {
+            //the layout is stable, nothing to do until something changes
+            timer.stop();
+            layoutSuspended = true;
+        }
+    }
+
+    /**
+     * Restarts the automatic layout after it was suspended because it became
+     * stable.
+     */
+    private void resumeLayout() {
+        if (layoutSuspended && automaticLayoutProperty.get()) {
+            layoutSuspended = false;
+            timer.start();
         }
-        applyForces();
     }
 
     /**
@@ -264,11 +311,31 @@ public class SmartGraphPanel<V, E> extends Pane {
 
             //start automatic layout
             timer.start();
+            layoutWorker.setRunning(true);
         }
 
         this.initialized = true;
     }
 
+    /**
+     * Releases the resources held by this panel: stops the automatic layout,
+     * ends the layout thread and stops observing the underlying graph.
+     * <p>
+     * Must be called when the panel is discarded; it should not be used
+     * afterwards.
+     */
+    public void dispose() {
+        timer.stop();
+        layoutWorker.close();
+        if (changesTracked) {
+            ((Observable) theGraph).removeObservers(graphObserver);
+        }
+        synchronized (changesLock) {
+            vertexChanges.clear();
+            edgeChanges.clear();
+        }
+    }
+
     /**
      * Returns the property used to toggle the automatic layout of vertices.
      * 
@@ -287,6 +354,18 @@ public class SmartGraphPanel<V, E> extends Pane {
         automaticLayoutProperty.set(value);
     }
 
+    /**
+     * Sets the Barnes-Hut approximation threshold used to compute the
+     * repulsion between vertices in the automatic layout. Higher values are
+     * faster but less accurate; zero computes the exact repulsion between
+     * every two vertices.
+     *
+     * @param theta approximation threshold
+     */
+    public void setLayoutTheta(double theta) {
+        layoutWorker.setTheta(theta);
+    }
+
     /**
      * Forces a refresh of the visualization based on current state of the
      * underlying graph, immediately returning to the caller.
@@ -357,9 +436,106 @@ public class SmartGraphPanel<V, E> extends Pane {
     }
 
     private synchronized void updateNodes() {
-        removeNodes();
-        insertNodes();
-        updateLabels();
+        boolean rescan;
+        Map<Vertex<V>, Boolean> vertices;
+        Map<Edge<E, V>, Boolean> edges;
+        synchronized (changesLock) {
+            rescan = rescanPending;
+            rescanPending = !changesTracked;
+            vertices = vertexChanges;
+            edges = edgeChanges;
+            vertexChanges = new LinkedHashMap<>();
+            edgeChanges = new LinkedHashMap<>();
+        }
+
+        if (rescan) {
+            removeNodes(removedVertices(), removedEdges());
+            insertNodes(unplottedVertices(), unplottedEdges());
+            updateLabels();
+        } else {
+            updateChangedNodes(vertices, edges);
+        }
+        layoutOutdated = true;
+        resumeLayout();
+    }
+
+    /**
+     * Records a change of the underlying graph, to be displayed on the next
+     * update. Only the last change of each vertex and edge matters, so
+     * <code>true</code> is stored for inserted and <code>false</code> for
+     * removed ones. May be called from any thread.
+     *
+     * @param obj change of the graph
+     */
+    @SuppressWarnings("unchecked")
+    private void graphChanged(Object obj) {
+        if (!(obj instanceof GraphEvent)) {
+            return;
+        }
+        GraphEvent<V, E> event = (GraphEvent<V, E>) obj;
+        synchronized (changesLock) {
+            switch (event.getKind()) {
+                case VERTEX_INSERTED:
+                    vertexChanges.put(event.getVertex(), true);
+                    break;
+                case VERTEX_REMOVED:
+                    vertexChanges.put(event.getVertex(), false);
+                    break;
+                case EDGE_INSERTED:
+                    edgeChanges.put(event.getEdge(), true);
+                    break;
+                case EDGE_REMOVED:
+                    edgeChanges.put(event.getEdge(), false);
+                    break;
+                case CLEARED:
+                    rescanPending = true;
+                    vertexChanges.clear();
+                    edgeChanges.clear();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Displays the changes of the underlying graph reported since the last
+     * update, in time proportional to their number.
+     *
+     * @param vertices inserted (true) and removed (false) vertices
+     * @param edges    inserted (true) and removed (false) edges
+     */
+    private void updateChangedNodes(Map<Vertex<V>, Boolean> vertices, Map<Edge<E, V>, Boolean> edges) {
+        List<Vertex<V>> removedVertices = new ArrayList<>();
+        List<Vertex<V>> unplottedVertices = new ArrayList<>();
+        vertices.forEach((vertex, inserted) -> {
+            if (!inserted && vertexNodes.containsKey(vertex)) {
+                removedVertices.add(vertex);
+            } else if (inserted && !vertexNodes.containsKey(vertex)) {
+                unplottedVertices.add(vertex);
+            }
+        });
+
+        List<Edge<E, V>> removedEdges = new ArrayList<>();
+        List<Edge<E, V>> unplottedEdges = new ArrayList<>();
+        List<Edge<E, V>> replacedEdges = new ArrayList<>();
+        edges.forEach((edge, inserted) -> {
+            if (!inserted && edgeNodes.containsKey(edge)) {
+                removedEdges.add(edge);
+            } else if (inserted && !edgeNodes.containsKey(edge)) {
+                unplottedEdges.add(edge);
+            } else if (inserted) {
+                replacedEdges.add(edge);
+            }
+        });
+
+        removeNodes(removedVertices, removedEdges);
+        insertNodes(unplottedVertices, unplottedEdges);
+
+        for (Edge<E, V> edge : replacedEdges) {
+            SmartLabel label = edgeNodes.get(edge).getAttachedLabel();
+            if (label != null) {
+                label.setText(edge.element() != null ? edge.element().toString() : "<NULL>");
+            }
+        }
     }
 
     /*
@@ -398,7 +574,10 @@ public class SmartGraphPanel<V, E> extends Pane {
 
         /* create edges graphical representations between existing vertices */
         //this is used to guarantee that no duplicate edges are ever inserted
-        List<Edge<E, V>> edgesToPlace = listOfEdges();
+        Set<Edge<E, V>> edgesToPlace = new HashSet<>(theGraph.edges());
+        for (Edge<E, V> edge : edgesToPlace) {
+            countEdge(edge, 1);
+        }
 
         for (Vertex<V> vertex : vertexNodes.keySet()) {
 
@@ -512,16 +691,14 @@ public class SmartGraphPanel<V, E> extends Pane {
         }
     }
 
-    private void insertNodes() {
-        Collection<Vertex<V>> unplottedVertices = unplottedVertices();
-
+    private void insertNodes(Collection<Vertex<V>> unplottedVertices, Collection<Edge<E, V>> unplottedEdges) {
         List<SmartGraphVertexNode<V>> newVertices = null;
 
-        Bounds bounds = getPlotBounds();
-        double mx = bounds.getMinX() + bounds.getWidth() / 2.0;
-        double my = bounds.getMinY() + bounds.getHeight() / 2.0;
-
         if (!unplottedVertices.isEmpty()) {
+            Bounds bounds = getPlotBounds();
+            double mx = bounds.getMinX() + bounds.getWidth() / 2.0;
+            double my = bounds.getMinY() + bounds.getHeight() / 2.0;
+
 
             newVertices = new LinkedList<>();
 
@@ -570,8 +747,8 @@ public class SmartGraphPanel<V, E> extends Pane {
 
         }
 
-        Collection<Edge<E, V>> unplottedEdges = unplottedEdges();
         if (!unplottedEdges.isEmpty()) {
+            List<Edge<E, V>> edgesToPlace = new ArrayList<>();
             for (Edge<E, V> edge : unplottedEdges) {
 
                 Vertex<V>[] vertices = edge.vertices();
@@ -587,9 +764,23 @@ public class SmartGraphPanel<V, E> extends Pane {
                 be coming at this pace.
                 */
                 if(graphVertexIn == null || graphVertexOut == null) {
+                    synchronized (changesLock) {
+                        edgeChanges.putIfAbsent(edge, true);
+                    }
                     continue;
                 }
-                
+
+                //count every new edge first, so the ones between the same
+                //vertices are all drawn as curves
+                countEdge(edge, 1);
+                edgesToPlace.add(edge);
+            }
+
+            for (Edge<E, V> edge : edgesToPlace) {
+                Vertex<V>[] vertices = edge.vertices();
+                SmartGraphVertexNode<V> graphVertexOut = vertexNodes.get(vertices[0]);
+                SmartGraphVertexNode<V> graphVertexIn = vertexNodes.get(vertices[1]);
+
                 graphVertexOut.addAdjacentVertex(graphVertexIn);
                 graphVertexIn.addAdjacentVertex(graphVertexOut);
 
@@ -614,51 +805,34 @@ public class SmartGraphPanel<V, E> extends Pane {
 
     }
 
-    private void removeNodes() {
-        Collection<Vertex<V>> removedVertices = removedVertices();
-        Collection<SmartGraphEdgeBase> values = new LinkedList<>(edgeNodes.values());
+    private void removeNodes(Collection<Vertex<V>> removedVertices, Collection<Edge<E, V>> removedEdges) {
+        //permanently remove edges that were removed from the underlying graph,
+        //which include the edges of the removed vertices
+        for (Edge<E, V> e : removedEdges) {
+            SmartGraphEdgeBase edgeToRemove = edgeNodes.remove(e);
+            if (edgeToRemove != null) {
+                countEdge(e, -1);
+                removeEdge(edgeToRemove);
+            }
+        }
 
+        //permanently remove vertices
         Set<SmartGraphVertexNode<V>> verticesToRemove = new HashSet<>();
-        Set<SmartGraphEdgeBase> edgesToRemove = new HashSet<>();
-
-        //filter vertices to remove and their adjacent edges
         for (Vertex<V> v : removedVertices) {
-
-            for (SmartGraphEdgeBase edge : values) {
-                Vertex[] vertices = edge.getUnderlyingEdge().vertices();
-
-                if (vertices[0] == v || vertices[1] == v) {
-                    edgesToRemove.add(edge);
-                }
+            SmartGraphVertexNode<V> vertexToRemove = vertexNodes.remove(v);
+            if (vertexToRemove != null) {
+                verticesToRemove.add(vertexToRemove);
+                removeVertice(vertexToRemove);
             }
-
-            SmartGraphVertexNode<V> get = vertexNodes.get(v);
-            verticesToRemove.add(get);
         }
 
-        //permanently remove edges
-        for (SmartGraphEdgeBase e : edgesToRemove) {
-            edgeNodes.remove(e.getUnderlyingEdge());
-            removeEdge(e);
-        }
-
-        //permanently remove vertices
+        //remove adjacencies from the remaining vertices adjacent to them
         for (SmartGraphVertexNode<V> v : verticesToRemove) {
-            vertexNodes.remove(v.getUnderlyingVertex());
-            removeVertice(v);
-        }
-        
-        //permanently remove remaining edges that were removed from the underlying graph
-        Collection<Edge<E, V>> removedEdges = removedEdges();
-        for (Edge<E, V> e : removedEdges) {
-            SmartGraphEdgeBase edgeToRemove = edgeNodes.get(e);
-            edgeNodes.remove(e);
-            removeEdge(edgeToRemove);
-        }
-
-        //remove adjacencies from remaining vertices
-        for (SmartGraphVertexNode<V> v : vertexNodes.values()) {
-            v.removeAdjacentVertices(verticesToRemove);
+            for (SmartGraphVertexNode<V> adjacent : v.getAdjacentVertices()) {
+                if (!verticesToRemove.contains(adjacent)) {
+                    adjacent.removeAdjacentVertices(verticesToRemove);
+                }
+            }
         }
     }
 
@@ -736,80 +910,105 @@ public class SmartGraphPanel<V, E> extends Pane {
     /*
     * AUTOMATIC LAYOUT 
      */
-    private void computeForces() {
-        for (SmartGraphVertexNode<V> v : vertexNodes.values()) {
-            for (SmartGraphVertexNode<V> other : vertexNodes.values()) {
-                if (v == other) {
-                    continue; //NOP
-                }
-
-                //double k = Math.sqrt(getWidth() * getHeight() / graphVertexMap.size());
-                Point2D repellingForce = UtilitiesPoint2D.repellingForce(v.getUpdatedPosition(), other.getUpdatedPosition(), this.repulsionForce);
+    /**
+     * Sends to the layout worker what changed in the plot since the last
+     * frame: the vertices and edges, the bounds and the vertices being
+     * dragged by the user.
+     */
+    private void submitLayoutState() {
+        if (layoutOutdated) {
+            updateLayoutGraph();
+        }
+        layoutWorker.setBounds(getWidth(), getHeight(), graphProperties.getVertexRadius());
+        for (int i = 0; i < layoutNodes.size(); i++) {
+            SmartGraphVertexNode<V> v = layoutNodes.get(i);
+            if (v.isDragging()) {
+                layoutWorker.pin(i, v.getCenterX(), v.getCenterY());
+            }
+        }
+    }
 
-                double deltaForceX = 0, deltaForceY = 0;
+    /**
+     * Moves the vertices to the positions of the latest iteration of the
+     * layout worker, if there is a new one. Dragged vertices stay where the
+     * user put them.
+     */
+    private void applyLayoutPositions() {
+        int count = layoutWorker.readPositions(layoutX, layoutY);
+        for (int i = 0; i < count; i++) {
+            layoutNodes.get(i).setPosition(layoutX[i], layoutY[i]);
+        }
+    }
 
-                //compute attractive and reppeling forces
-                //opt to use internal areAdjacent check, because a vertex can be removed from
-                //the underlying graph before we have the chance to remove it from our
-                //internal data structure
-                if (areAdjacent(v, other)) {
+    /**
+     * Copies the displayed vertices and their adjacencies to the layout,
+     * indexing the vertices by their position in <code>layoutNodes</code>.
+     * Uses the internal adjacencies, because a vertex can be removed from the
+     * underlying graph before we have the chance to remove it from our
+     * internal data structure.
+     */
+    private void updateLayoutGraph() {
+        layoutNodes.clear();
+        layoutNodes.addAll(vertexNodes.values());
 
-                    Point2D attractiveForce = UtilitiesPoint2D.attractiveForce(v.getUpdatedPosition(), other.getUpdatedPosition(),
-                            vertexNodes.size(), this.attractionForce, this.attractionScale);
+        Map<SmartGraphVertexNode<V>, Integer> index = new HashMap<>();
+        for (int i = 0; i < layoutNodes.size(); i++) {
+            index.put(layoutNodes.get(i), i);
+        }
 
-                    deltaForceX = attractiveForce.getX() + repellingForce.getX();
-                    deltaForceY = attractiveForce.getY() + repellingForce.getY();
-                } else {
-                    deltaForceX = repellingForce.getX();
-                    deltaForceY = repellingForce.getY();
+        int[] offsets = new int[layoutNodes.size() + 1];
+        List<Integer> targets = new ArrayList<>();
+        for (int i = 0; i < layoutNodes.size(); i++) {
+            SmartGraphVertexNode<V> v = layoutNodes.get(i);
+            for (SmartGraphVertexNode<V> other : v.getAdjacentVertices()) {
+                Integer j = index.get(other);
+                if (j != null && other != v) {
+                    targets.add(j);
                 }
-
-                v.addForceVector(deltaForceX, deltaForceY);
             }
+            offsets[i + 1] = targets.size();
         }
-    }
 
-    private boolean areAdjacent(SmartGraphVertexNode<V> v, SmartGraphVertexNode<V> u) {
-        return v.isAdjacentTo(u);
-    }
-
-    private void updateForces() {
-        vertexNodes.values().forEach((v) -> {
-            v.updateDelta();
-        });
-    }
+        int count = layoutNodes.size();
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = layoutNodes.get(i).getCenterX();
+            y[i] = layoutNodes.get(i).getCenterY();
+        }
+        layoutX = new double[count];
+        layoutY = new double[count];
 
-    private void applyForces() {
-        vertexNodes.values().forEach((v) -> {
-            v.moveFromForces();
-        });
-    }
-
-    private void resetForces() {
-        vertexNodes.values().forEach((v) -> {
-            v.resetForces();
-        });
+        layoutWorker.setGraph(count, offsets, targets.stream().mapToInt(Integer::intValue).toArray(), x, y);
+        layoutOutdated = false;
     }
 
+    /**
+     * Returns the number of displayed edges between two vertices, in either
+     * direction, including the ones being inserted.
+     *
+     * @param v a vertex
+     * @param u another vertex
+     * @return number of edges between them
+     */
     private int getTotalEdgesBetween(Vertex<V> v, Vertex<V> u) {
-        //TODO: It may be necessary to adjust this method if you use another Graph
-        //variant, e.g., Digraph (directed graph)
-        int count = 0;
-        for (Edge<E, V> edge : theGraph.edges()) {
-            if (edge.vertices()[0] == v && edge.vertices()[1] == u
-                    || edge.vertices()[0] == u && edge.vertices()[1] == v) {
-                count++;
-            }
-        }
-        return count;
+        return edgeCounts.getOrDefault(new Tuple<>(v, u), 0);
     }
 
-    private List<Edge<E, V>> listOfEdges() {
-        List<Edge<E, V>> list = new LinkedList<>();
-        for (Edge<E, V> edge : theGraph.edges()) {
-            list.add(edge);
+    /**
+     * Updates the number of edges between the vertices of an edge, which is
+     * kept for both orders of the vertices.
+     *
+     * @param edge  inserted or removed edge
+     * @param delta 1 if inserted; -1 if removed
+     */
+    private void countEdge(Edge<E, V> edge, int delta) {
+        Vertex<V> u = edge.vertices()[0];
+        Vertex<V> v = edge.vertices()[1];
+        edgeCounts.merge(new Tuple<>(u, v), delta, (count, d) -> count + d == 0 ? null : count + d);
+        if (u != v) {
+            edgeCounts.merge(new Tuple<>(v, u), delta, (count, d) -> count + d == 0 ? null : count + d);
         }
-        return list;
     }
 
     private List<Vertex<V>> listOfVertices() {
@@ -847,7 +1046,7 @@ public class SmartGraphPanel<V, E> extends Pane {
     private Collection<Vertex<V>> removedVertices() {
         List<Vertex<V>> removed = new LinkedList<>();
 
-        Collection<Vertex<V>> graphVertices = theGraph.vertices();
+        Set<Vertex<V>> graphVertices = new HashSet<>(theGraph.vertices());
         Collection<SmartGraphVertexNode<V>> plotted = vertexNodes.values();
 
         for (SmartGraphVertexNode<V> v : plotted) {
@@ -868,7 +1067,7 @@ public class SmartGraphPanel<V, E> extends Pane {
     private Collection<Edge<E, V>> removedEdges() {
         List<Edge<E, V>> removed = new LinkedList<>();
 
-        Collection<Edge<E, V>> graphEdges = theGraph.edges();
+        Set<Edge<E, V>> graphEdges = new HashSet<>(theGraph.edges());
         Collection<SmartGraphEdgeBase> plotted = edgeNodes.values();
 
         for (SmartGraphEdgeBase e : plotted) {
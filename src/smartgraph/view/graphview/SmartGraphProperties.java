@@ -72,6 +72,15 @@ public class SmartGraphProperties {
     private static final double DEFAULT_ATTRACTION_SCALE = 1;
     private static final String PROPERTY_ATTRACTION_SCALE = "layout.attraction-scale";
 
+    private static final double DEFAULT_BARNES_HUT_THETA = 0.8;
+    private static final String PROPERTY_BARNES_HUT_THETA = "layout.barnes-hut-theta";
+
+    private static final double DEFAULT_COOLING_FACTOR = 0.95;
+    private static final String PROPERTY_COOLING_FACTOR = "layout.cooling-factor";
+
+    private static final double DEFAULT_CONVERGENCE_THRESHOLD = 0.5;
+    private static final String PROPERTY_CONVERGENCE_THRESHOLD = "layout.convergence-threshold";
+
     private static final String DEFAULT_FILE = "smartgraph.properties";
     private Properties properties;
     
@@ -153,6 +162,38 @@ public class SmartGraphProperties {
         return getDoubleProperty(PROPERTY_ATTRACTION_SCALE, DEFAULT_ATTRACTION_SCALE);
     }
     
+    /**
+     * Returns a property that indicates the Barnes-Hut approximation threshold
+     * to use for the repulsion in the automatic force-based layout. Zero
+     * computes the exact repulsion between every two vertices.
+     * 
+     * @return corresponding property value
+     */
+    public double getBarnesHutTheta() {
+        return getDoubleProperty(PROPERTY_BARNES_HUT_THETA, DEFAULT_BARNES_HUT_THETA);
+    }
+    
+    /**
+     * Returns a property that indicates the factor by which the temperature
+     * of the automatic force-based layout cools down, between zero and one.
+     * 
+     * @return corresponding property value
+     */
+    public double getCoolingFactor() {
+        return getDoubleProperty(PROPERTY_COOLING_FACTOR, DEFAULT_COOLING_FACTOR);
+    }
+    
+    /**
+     * Returns a property that indicates the largest movement of a vertex, in
+     * pixels, below which the automatic force-based layout is considered
+     * stable and stops.
+     * 
+     * @return corresponding property value
+     */
+    public double getConvergenceThreshold() {
+        return getDoubleProperty(PROPERTY_CONVERGENCE_THRESHOLD, DEFAULT_CONVERGENCE_THRESHOLD);
+    }
+    
     /**
      * Returns a property that indicates whether a vertex has a tooltip installed.
      * 
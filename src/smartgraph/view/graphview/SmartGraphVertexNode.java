@@ -133,6 +133,25 @@ public class SmartGraphVertexNode<T> extends Circle implements SmartGraphVertex<
         return this.adjacentVertices.contains(v);
     }
 
+    /**
+     * Returns the internal list of adjacent vertices. The returned set must
+     * not be modified.
+     *
+     * @return adjacent vertices
+     */
+    Set<SmartGraphVertexNode<T>> getAdjacentVertices() {
+        return this.adjacentVertices;
+    }
+
+    /**
+     * Checks whether the vertex is being dragged by the user.
+     *
+     * @return true if it is being dragged; false, otherwise
+     */
+    boolean isDragging() {
+        return this.isDragging;
+    }
+
     /**
      * Returns the current position of the instance in pixels.
      *
@@ -223,7 +242,7 @@ public class SmartGraphVertexNode<T> extends Circle implements SmartGraphVertex<
      * Updates the future position according to the current internal force
      * vector.
      *
-     * @see SmartGraphPanel#updateForces()
+     * @see ForceLayout#step(double, double, double)
      */
     public void updateDelta() {
         updatedPosition.x = updatedPosition.x /* + speed*/ + forceVector.x;
@@ -235,7 +254,7 @@ public class SmartGraphVertexNode<T> extends Circle implements SmartGraphVertex<
      * <p>
      * Moves are constrained within the parent pane dimensions.
      *
-     * @see SmartGraphPanel#applyForces()
+     * @see ForceLayout#step(double, double, double)
      */
     public void moveFromForces() {
 